@@ -0,0 +1,58 @@
+package dev.erdos.automata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a Levenshtein automaton with powerset construction, and the cached builder on its hit and miss paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevenshteinBuildBenchmark {
+
+	@Param({"4", "8", "16"})
+	int length;
+
+	@Param({"1", "2", "3"})
+	int distance;
+
+	String word;
+	LevenshteinDFA cache;
+
+	@Setup
+	public void setup() {
+		word = Words.unique(length);
+		cache = new LevenshteinDFA(distance);
+		cache.cached(word);
+	}
+
+	@Benchmark
+	public SimpleIntDfa ndfaToDfa() {
+		return NDFA.levenshtein(word, distance).dfa();
+	}
+
+	@Benchmark
+	public SimpleIntDfa cachedHit() {
+		return cache.cached(word);
+	}
+
+	@Benchmark
+	public SimpleIntDfa cachedMiss() {
+		return new LevenshteinDFA(distance).cached(word);
+	}
+}
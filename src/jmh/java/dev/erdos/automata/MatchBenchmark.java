@@ -0,0 +1,105 @@
+package dev.erdos.automata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of matching words of a dictionary against a Levenshtein automaton.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(MatchBenchmark.WORDS)
+public class MatchBenchmark {
+
+	static final int WORDS = 1024;
+
+	@Param({"1", "2"})
+	int distance;
+
+	NDFA<Boolean> ndfa;
+	SimpleIntDfa dfa;
+	SimpleIntDfa frozen;
+	SimpleIntDfa table;
+	Utf8Dfa utf8;
+	String[] words;
+	byte[][] bytes;
+
+	@Setup
+	public void setup() {
+		final String pattern = "levenshtein";
+		ndfa = NDFA.levenshtein(pattern, distance);
+		dfa = ndfa.dfa();
+		frozen = dfa.freeze();
+		table = TableIntDfa.of(dfa);
+		utf8 = Utf8Dfa.of(dfa);
+		words = Words.near(pattern, WORDS, 42);
+		bytes = new byte[WORDS][];
+		for (int i = 0; i < WORDS; i++) {
+			bytes[i] = words[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private static int count(java.util.function.Predicate<CharSequence> matcher, String[] words) {
+		int count = 0;
+		for (String word : words) {
+			if (matcher.test(word)) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int dfaTest() {
+		return count(dfa, words);
+	}
+
+	@Benchmark
+	public int frozenTest() {
+		return count(frozen, words);
+	}
+
+	@Benchmark
+	public int tableTest() {
+		return count(table, words);
+	}
+
+	// matching the encoded words directly, compare with decoding them first
+	@Benchmark
+	public int utf8Test() {
+		int count = 0;
+		for (byte[] word : bytes) {
+			if (utf8.test(word)) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int decodeAndTableTest() {
+		int count = 0;
+		for (byte[] word : bytes) {
+			if (table.test(new String(word, StandardCharsets.UTF_8))) count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int ndfaTest() {
+		return count(ndfa, words);
+	}
+}
@@ -0,0 +1,70 @@
+package dev.erdos.automata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Union of many small pattern automata and concatenation of a few of them (the result grows fast). Unions are
+ * built both in a MutableArrayDFA and in a DfaBuilder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationsBenchmark {
+
+	@Param({"10", "100"})
+	int patterns;
+
+	final IntDfaOperations operations = new IntDfaOperations();
+	SimpleIntDfa[] dfas;
+
+	@Setup
+	public void setup() {
+		final String[] words = Words.near("automaton", patterns, 7);
+		dfas = new SimpleIntDfa[patterns];
+		for (int i = 0; i < patterns; i++) {
+			dfas[i] = NDFA.levenshtein(words[i], 1).dfa();
+		}
+	}
+
+	@Benchmark
+	public WritableIntDfa union() {
+		WritableIntDfa result = MutableArrayDFA.empty();
+		for (SimpleIntDfa dfa : dfas) {
+			result = operations.union(result, dfa);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public SimpleIntDfa unionIntoBuilder() {
+		DfaBuilder result = new DfaBuilder();
+		for (SimpleIntDfa dfa : dfas) {
+			result = operations.union(result, dfa);
+		}
+		return result.build();
+	}
+
+	@Benchmark
+	public WritableIntDfa concat() {
+		WritableIntDfa result = NDFA.levenshtein("", 0).dfa();
+		for (int i = 0; i < Math.min(dfas.length, 5); i++) {
+			result = operations.concat(result, dfas[i]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,38 @@
+package dev.erdos.automata;
+
+import java.util.Random;
+
+// input data for the benchmarks
+final class Words {
+
+	private Words() {}
+
+	// word of distinct letters
+	static String unique(int length) {
+		final StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append((char) ('a' + i));
+		}
+		return builder.toString();
+	}
+
+	// random edits of the pattern, some of them far from it
+	static String[] near(String pattern, int count, long seed) {
+		final Random random = new Random(seed);
+		final String[] words = new String[count];
+		for (int i = 0; i < count; i++) {
+			final StringBuilder word = new StringBuilder(pattern);
+			for (int edits = random.nextInt(4); edits > 0 && word.length() > 0; edits--) {
+				final int at = random.nextInt(word.length());
+				final char c = (char) ('a' + random.nextInt(26));
+				switch (random.nextInt(3)) {
+					case 0: word.setCharAt(at, c); break;
+					case 1: word.insert(at, c); break;
+					default: word.deleteCharAt(at);
+				}
+			}
+			words[i] = word.toString();
+		}
+		return words;
+	}
+}
@@ -0,0 +1,183 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static dev.erdos.automata.NDFA.EPSILON;
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+
+/**
+ * Simulates a NDFA by keeping the set of active states in a bitset.
+ *
+ * For every state and letter the epsilon closure of all targets is precomputed, so reading a character is
+ * a bitwise or of one row for each active state. Automata with at most 64 states are simulated in a single long.
+ */
+final class BitParallelNfa implements Predicate<CharSequence> {
+
+	private final int n;
+	private final int words;
+
+	// explicit letters in ascending order. letter index 0 stands for all other characters.
+	private final char[] alphabet;
+
+	private final long[] start;
+	private final long[] accepting;
+
+	// successors of state s on letter index a are at [(a * n + s) * words ..< (a * n + s + 1) * words]
+	private final long[] successors;
+
+	BitParallelNfa(NDFA<?> ndfa) {
+		this.n = ndfa.size();
+		this.words = (n + 63) >>> 6;
+		this.alphabet = alphabet(ndfa.alphabet());
+
+		final long[] closures = closures(ndfa, n, words);
+
+		this.successors = new long[(alphabet.length + 1) * n * words];
+		for (int state = 0; state < n; state++) {
+			for (int i = 0, max = ndfa.transitions(state); i < max; i++) {
+				final char c = ndfa.transitionLabel(state, i);
+				final int target = ndfa.transitionTarget(state, i);
+				if (c == EPSILON) {
+					continue;
+				} else if (c == ANY) {
+					for (int letter = 0; letter <= alphabet.length; letter++) {
+						or(successors, (letter * n + state) * words, closures, target * words, words);
+					}
+				} else {
+					or(successors, (letter(c) * n + state) * words, closures, target * words, words);
+				}
+			}
+		}
+
+		this.start = Arrays.copyOfRange(closures, NDFA.START_STATE * words, (NDFA.START_STATE + 1) * words);
+		this.accepting = new long[words];
+		for (int state = 0; state < n; state++) {
+			if (ndfa.stateLabels.hasKey(state)) {
+				accepting[state >>> 6] |= 1L << state;
+			}
+		}
+	}
+
+	private static char[] alphabet(Set<Character> letters) {
+		char[] result = new char[letters.size()];
+		int i = 0;
+		for (char c : letters) {
+			result[i++] = c;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	// epsilon closure of every state
+	private static long[] closures(NDFA<?> ndfa, int n, int words) {
+		final long[] closures = new long[n * words];
+		final int[] stack = new int[n];
+		for (int state = 0; state < n; state++) {
+			final int offset = state * words;
+			int top = 0;
+			stack[top++] = state;
+			closures[offset + (state >>> 6)] |= 1L << state;
+			while (top > 0) {
+				final int item = stack[--top];
+				for (int i = 0, max = ndfa.transitions(item); i < max; i++) {
+					if (ndfa.transitionLabel(item, i) != EPSILON) continue;
+					final int target = ndfa.transitionTarget(item, i);
+					final long bit = 1L << target;
+					if ((closures[offset + (target >>> 6)] & bit) == 0) {
+						closures[offset + (target >>> 6)] |= bit;
+						stack[top++] = target;
+					}
+				}
+			}
+		}
+		return closures;
+	}
+
+	private static void or(long[] target, int targetOffset, long[] source, int sourceOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			target[targetOffset + i] |= source[sourceOffset + i];
+		}
+	}
+
+	// index of letter or 0 when character has no explicit transition
+	int letter(char c) {
+		final int idx = Arrays.binarySearch(alphabet, c);
+		return (idx < 0) ? 0 : idx + 1;
+	}
+
+	char letterChar(int letter) {
+		return (letter == 0) ? ANY : alphabet[letter - 1];
+	}
+
+	// number of letters including the one for other characters
+	int letters() {
+		return alphabet.length + 1;
+	}
+
+	// number of longs in a state set
+	int words() {
+		return words;
+	}
+
+	void start(long[] target, int offset) {
+		System.arraycopy(start, 0, target, offset, words);
+	}
+
+	boolean accepts(long[] states, int offset) {
+		for (int w = 0; w < words; w++) {
+			if ((states[offset + w] & accepting[w]) != 0) return true;
+		}
+		return false;
+	}
+
+	// writes the set of states after reading letter and returns false when it is empty.
+	boolean step(long[] states, int offset, int letter, long[] target, int targetOffset) {
+		final int base = letter * n;
+		Arrays.fill(target, targetOffset, targetOffset + words, 0L);
+		for (int w = 0; w < words; w++) {
+			for (long bits = states[offset + w]; bits != 0; bits &= bits - 1) {
+				final int state = (w << 6) + Long.numberOfTrailingZeros(bits);
+				or(target, targetOffset, successors, (base + state) * words, words);
+			}
+		}
+		long any = 0;
+		for (int w = 0; w < words; w++) {
+			any |= target[targetOffset + w];
+		}
+		return any != 0;
+	}
+
+	@Override
+	public boolean test(CharSequence word) {
+		return (words == 1) ? testSingleWord(word) : testMultipleWords(word);
+	}
+
+	private boolean testSingleWord(CharSequence word) {
+		long states = start[0];
+		for (int i = 0, len = word.length(); i < len; i++) {
+			final int base = letter(word.charAt(i)) * n;
+			long next = 0;
+			for (long bits = states; bits != 0; bits &= bits - 1) {
+				next |= successors[base + Long.numberOfTrailingZeros(bits)];
+			}
+			if (next == 0) return false;
+			states = next;
+		}
+		return (states & accepting[0]) != 0;
+	}
+
+	private boolean testMultipleWords(CharSequence word) {
+		long[] states = start.clone();
+		long[] next = new long[words];
+		for (int i = 0, len = word.length(); i < len; i++) {
+			if (!step(states, 0, letter(word.charAt(i)), next, 0)) return false;
+
+			long[] tmp = states;
+			states = next;
+			next = tmp;
+		}
+		return accepts(states, 0);
+	}
+}
@@ -0,0 +1,161 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Deterministic Finite Automaton optimized for matching.
+ *
+ * Edges of all states are stored in flat arrays: outgoing edges of state i are found in the index range
+ * offsets[i] .. offsets[i + 1] of labels and targets, sorted by label (so the '*' edge comes first).
+ * Accepting states are stored in a bitset.
+ */
+public final class CompactIntDfa implements SimpleIntDfa {
+
+	private final int[] offsets;
+	private final char[] labels;
+	private final int[] targets;
+	private final long[] accepting;
+
+	CompactIntDfa(int[] offsets, char[] labels, int[] targets, long[] accepting) {
+		assert offsets.length > 1;
+		assert labels.length == targets.length;
+		this.offsets = offsets;
+		this.labels = labels;
+		this.targets = targets;
+		this.accepting = accepting;
+	}
+
+	/**
+	 * Creates a compact copy of an automaton. Edges with duplicate labels are dropped, the first one is kept.
+	 */
+	public static CompactIntDfa freeze(SimpleIntDfa dfa) {
+		if (dfa instanceof CompactIntDfa) {
+			return (CompactIntDfa) dfa;
+		}
+
+		final int size = IntDfaOperations.explore(dfa);
+		int[] offsets = new int[size + 1];
+		int maxLabels = 0;
+		for (int i = 0; i < size; i++) {
+			int n = dfa.labels(i);
+			offsets[i + 1] = offsets[i] + n;
+			maxLabels = Math.max(maxLabels, n);
+		}
+
+		char[] labels = new char[offsets[size]];
+		int[] targets = new int[offsets[size]];
+		long[] accepting = new long[(size + 63) >>> 6];
+		long[] buffer = new long[maxLabels];
+
+		int edge = 0;
+		for (int i = 0; i < size; i++) {
+			int n = dfa.labels(i);
+			for (int j = 0; j < n; j++) {
+				buffer[j] = combineInts(dfa.label(i, j), dfa.target(i, j));
+			}
+			Arrays.sort(buffer, 0, n);
+
+			offsets[i] = edge;
+			for (int j = 0; j < n; j++) {
+				char c = decombineInt1(buffer[j]);
+				if (j > 0 && c == labels[edge - 1]) continue;
+				labels[edge] = c;
+				targets[edge] = decombineInt2(buffer[j]);
+				edge++;
+			}
+
+			if (dfa.accepts(i)) {
+				accepting[i >>> 6] |= 1L << i;
+			}
+		}
+		offsets[size] = edge;
+
+		if (edge < labels.length) {
+			labels = Arrays.copyOf(labels, edge);
+			targets = Arrays.copyOf(targets, edge);
+		}
+
+		return new CompactIntDfa(offsets, labels, targets, accepting);
+	}
+
+	@Override
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	@Override
+	public int step(int state, char c) {
+		int idx = search(offsets[state], offsets[state + 1], c);
+		return idx < 0 ? -1 : targets[idx];
+	}
+
+	@Override
+	public char label(int state, int n) {
+		assert n < labels(state);
+		return labels[offsets[state] + n];
+	}
+
+	@Override
+	public int target(int state, int n) {
+		assert n < labels(state);
+		return targets[offsets[state] + n];
+	}
+
+	@Override
+	public int labels(int state) {
+		return offsets[state + 1] - offsets[state];
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && (accepting[state >>> 6] & (1L << state)) != 0;
+	}
+
+	@Override
+	public int parse(CharSequence word) {
+		int state = START;
+		for (int i = 0, len = word.length(); i < len; i++) {
+			final int from = offsets[state];
+			final int to = offsets[state + 1];
+			int idx = search(from, to, word.charAt(i));
+			if (idx < 0) {
+				// '*' edge is always the first one
+				if (from < to && labels[from] == ANY) idx = from;
+				else return -1;
+			}
+			state = targets[idx];
+		}
+		return state;
+	}
+
+	@Override
+	public CompactIntDfa freeze() {
+		return this;
+	}
+
+	// index of edge with label c in range or -1
+	private int search(int from, int to, char c) {
+		int lo = from;
+		int hi = to - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final char label = labels[mid];
+			if (label < c) lo = mid + 1;
+			else if (label > c) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	private static long combineInts(char a, int b) {
+		return (long) a << 32 | b & 0xFFFFFFFFL;
+	}
+
+	private static char decombineInt1(long c) {
+		return (char) (c >> 32);
+	}
+
+	private static int decombineInt2(long c) {
+		return (int) c;
+	}
+}
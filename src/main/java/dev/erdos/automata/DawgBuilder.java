@@ -0,0 +1,207 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static dev.erdos.automata.SimpleIntDfa.START;
+
+/**
+ * Incremental construction of minimal acyclic automaton from sorted input (Daciuk et al.).
+ *
+ * States on the path of the last added word are still open, all other states are registered.
+ * When a new word is added the states of the previous word after the common prefix are replaced
+ * by an equivalent registered state or registered themselves, from the deepest one.
+ *
+ * The final state of every word holds a payload, states without one are rejecting. States are only
+ * equivalent when their payloads are equal too.
+ */
+final class DawgBuilder<V> {
+
+	private long[][] edges = new long[16][];
+	private int[] edgeCounts = new int[16];
+	private Object[] payloads = new Object[16];
+	private int states;
+
+	private final Map<Signature, Integer> register = new HashMap<>();
+
+	// states on the path of the previous word: path[i] is reached after i letters.
+	private int[] path = new int[16];
+	private final StringBuilder previous = new StringBuilder();
+	private boolean empty = true;
+
+	DawgBuilder() {
+		newState();
+	}
+
+	private int newState() {
+		if (states == edges.length) {
+			int capacity = states * 2;
+			edges = Arrays.copyOf(edges, capacity);
+			edgeCounts = Arrays.copyOf(edgeCounts, capacity);
+			payloads = Arrays.copyOf(payloads, capacity);
+		}
+		edges[states] = new long[2];
+		return states++;
+	}
+
+	private void appendEdge(int state, char c, int target) {
+		if (edgeCounts[state] == edges[state].length) {
+			edges[state] = Arrays.copyOf(edges[state], edgeCounts[state] * 2);
+		}
+		edges[state][edgeCounts[state]++] = combineInts(c, target);
+	}
+
+	/**
+	 * Adds a word that is not smaller than the previous one.
+	 *
+	 * @param payload of the final state of the word, not null
+	 * @return false when the word is the same as the previous one, it is ignored then
+	 * @throws IllegalArgumentException when the word is smaller than the previous one
+	 */
+	boolean add(CharSequence word, V payload) {
+		assert payload != null;
+		final int prefix = commonPrefix(previous, word);
+		if (prefix < previous.length() && (prefix == word.length() || word.charAt(prefix) < previous.charAt(prefix))) {
+			throw new IllegalArgumentException("Terms are not sorted: " + word + " after " + previous);
+		}
+		if (prefix == word.length() && prefix == previous.length() && !empty) {
+			return false;
+		}
+
+		replaceOrRegister(prefix);
+
+		if (path.length <= word.length()) {
+			path = Arrays.copyOf(path, word.length() * 2 + 1);
+		}
+		for (int i = prefix; i < word.length(); i++) {
+			final int state = newState();
+			appendEdge(path[i], word.charAt(i), state);
+			path[i + 1] = state;
+		}
+		payloads[path[word.length()]] = payload;
+
+		previous.setLength(0);
+		previous.append(word);
+		empty = false;
+		return true;
+	}
+
+	private static int commonPrefix(CharSequence a, CharSequence b) {
+		int i = 0;
+		for (int max = Math.min(a.length(), b.length()); i < max && a.charAt(i) == b.charAt(i); i++);
+		return i;
+	}
+
+	// registers states of the previous word after the first depth letters
+	private void replaceOrRegister(int depth) {
+		for (int i = previous.length(); i > depth; i--) {
+			final int child = path[i];
+			final int parent = path[i - 1];
+			final Signature signature = new Signature(payloads[child], edges[child], edgeCounts[child]);
+			final Integer registered = register.get(signature);
+			if (registered == null) {
+				register.put(signature, child);
+			} else {
+				// the child is always the last edge of the parent
+				edges[parent][edgeCounts[parent] - 1] = combineInts(previous.charAt(i - 1), registered);
+				edges[child] = null;
+			}
+		}
+	}
+
+	/**
+	 * Registers the states of the last word. No more words can be added afterwards.
+	 *
+	 * @return the states reachable from the root in depth first order, the root first
+	 */
+	int[] finish() {
+		replaceOrRegister(0);
+
+		final boolean[] seen = new boolean[states];
+		final int[] order = new int[states];
+		int count = 0;
+
+		final int[] stack = new int[states];
+		int top = 0;
+		stack[top++] = START;
+		seen[START] = true;
+		order[count++] = START;
+		while (top > 0) {
+			final int state = stack[--top];
+			for (int i = edgeCounts[state] - 1; i >= 0; i--) {
+				final int target = decombineInt2(edges[state][i]);
+				if (!seen[target]) {
+					seen[target] = true;
+					order[count++] = target;
+					stack[top++] = target;
+				}
+			}
+		}
+		return Arrays.copyOf(order, count);
+	}
+
+	/**
+	 * Number of states created, including the ones replaced by registered states.
+	 */
+	int states() {
+		return states;
+	}
+
+	int labels(int state) {
+		return edgeCounts[state];
+	}
+
+	char label(int state, int n) {
+		return decombineInt1(edges[state][n]);
+	}
+
+	int target(int state, int n) {
+		return decombineInt2(edges[state][n]);
+	}
+
+	/**
+	 * Payload of a final state or null.
+	 */
+	@SuppressWarnings("unchecked")
+	V payload(int state) {
+		return (V) payloads[state];
+	}
+
+	// registered states are equal when they have equal payloads and the same edges
+	private static final class Signature {
+		private final Object payload;
+		private final long[] edges;
+		private final int hash;
+
+		Signature(Object payload, long[] edges, int count) {
+			this.payload = payload;
+			this.edges = Arrays.copyOf(edges, count);
+			this.hash = 31 * Arrays.hashCode(this.edges) + Objects.hashCode(payload);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Signature && ((Signature) o).hash == hash && Arrays.equals(((Signature) o).edges, edges)
+					&& Objects.equals(((Signature) o).payload, payload);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	private static long combineInts(char a, int b) {
+		return (long) a << 32 | b & 0xFFFFFFFFL;
+	}
+
+	private static char decombineInt1(long c) {
+		return (char) (c >> 32);
+	}
+
+	private static int decombineInt2(long c) {
+		return (int) c;
+	}
+}
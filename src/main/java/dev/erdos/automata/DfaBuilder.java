@@ -0,0 +1,222 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+
+/**
+ * Writable automaton for building large automata, frozen into a CompactIntDfa with build().
+ *
+ * Edges of all states are kept sorted in one shared arena. Each state owns a region of the arena with a capacity
+ * that is a power of two; a full region is moved to one twice as large and the old one is reused by other states.
+ * So adding an edge is a binary search and a short shift, without allocating an array per edge.
+ *
+ * Connecting a letter that already has an edge replaces its target. Not thread safe.
+ */
+public final class DfaBuilder implements WritableIntDfa {
+
+	private static final int MIN_CAPACITY = 2;
+
+	private int size;
+
+	// region of state i is arena[offsets[i] ..< offsets[i] + capacities[i]], first counts[i] items are used
+	private int[] offsets = new int[16];
+	private int[] counts = new int[16];
+	private int[] capacities = new int[16];
+	private long[] arena = new long[64];
+	private int arenaSize;
+
+	// offsets of released regions by log2 of their capacity
+	private final int[][] free = new int[32][];
+	private final int[] freeCounts = new int[32];
+
+	private long[] accepting = new long[1];
+
+	public DfaBuilder() {
+		newState();
+	}
+
+	@Override
+	public int newState() {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+			counts = Arrays.copyOf(counts, size * 2);
+			capacities = Arrays.copyOf(capacities, size * 2);
+		}
+		offsets[size] = 0;
+		counts[size] = 0;
+		capacities[size] = 0;
+		return size++;
+	}
+
+	@Override
+	public DfaBuilder connect(int source, char c, int target) {
+		assert source < size;
+		assert target < size;
+
+		final int n = counts[source];
+		int idx = search(source, c);
+		if (idx >= 0) {
+			arena[offsets[source] + idx] = combineInts(c, target);
+			return this;
+		}
+		idx = -idx - 1;
+		if (n == capacities[source]) {
+			relocate(source, Math.max(MIN_CAPACITY, n * 2));
+		}
+		final int from = offsets[source];
+		System.arraycopy(arena, from + idx, arena, from + idx + 1, n - idx);
+		arena[from + idx] = combineInts(c, target);
+		counts[source] = n + 1;
+		return this;
+	}
+
+	@Override
+	public int copyWithOutgoingEdges(int state) {
+		assert 0 <= state;
+		final int copy = newState();
+		final int n = counts[state];
+		if (n > 0) {
+			relocate(copy, Integer.highestOneBit(Math.max(MIN_CAPACITY, n) * 2 - 1));
+			System.arraycopy(arena, offsets[state], arena, offsets[copy], n);
+			counts[copy] = n;
+		}
+		return copy;
+	}
+
+	// moves the edges of state to a region of capacity and releases the old one
+	private void relocate(int state, int capacity) {
+		final int offset = allocate(capacity);
+		System.arraycopy(arena, offsets[state], arena, offset, counts[state]);
+		if (capacities[state] > 0) {
+			release(offsets[state], capacities[state]);
+		}
+		offsets[state] = offset;
+		capacities[state] = capacity;
+	}
+
+	private int allocate(int capacity) {
+		final int bucket = Integer.numberOfTrailingZeros(capacity);
+		if (freeCounts[bucket] > 0) {
+			return free[bucket][--freeCounts[bucket]];
+		}
+		if (arenaSize + capacity > arena.length) {
+			arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + capacity));
+		}
+		final int offset = arenaSize;
+		arenaSize += capacity;
+		return offset;
+	}
+
+	private void release(int offset, int capacity) {
+		final int bucket = Integer.numberOfTrailingZeros(capacity);
+		if (free[bucket] == null) {
+			free[bucket] = new int[16];
+		} else if (freeCounts[bucket] == free[bucket].length) {
+			free[bucket] = Arrays.copyOf(free[bucket], freeCounts[bucket] * 2);
+		}
+		free[bucket][freeCounts[bucket]++] = offset;
+	}
+
+	// index of the edge with label c in the edges of state or (-insertion point - 1)
+	private int search(int state, char c) {
+		final int from = offsets[state];
+		int low = 0;
+		int high = counts[state] - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final char label = decombineInt1(arena[from + mid]);
+			if (label < c) {
+				low = mid + 1;
+			} else if (label > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	@Override
+	public int step(int state, char c) {
+		final int idx = search(state, c);
+		return (idx < 0) ? -1 : decombineInt2(arena[offsets[state] + idx]);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public char label(int state, int n) {
+		assert n < counts[state];
+		return decombineInt1(arena[offsets[state] + n]);
+	}
+
+	@Override
+	public int target(int state, int n) {
+		assert n < counts[state];
+		return decombineInt2(arena[offsets[state] + n]);
+	}
+
+	@Override
+	public int labels(int state) {
+		return counts[state];
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && state >>> 6 < accepting.length && (accepting[state >>> 6] & (1L << state)) != 0;
+	}
+
+	@Override
+	public void accept(int state) {
+		if (state >>> 6 >= accepting.length) {
+			accepting = Arrays.copyOf(accepting, Math.max(accepting.length * 2, (state >>> 6) + 1));
+		}
+		accepting[state >>> 6] |= 1L << state;
+	}
+
+	@Override
+	public void reject(int state) {
+		if (state >>> 6 < accepting.length) {
+			accepting[state >>> 6] &= ~(1L << state);
+		}
+	}
+
+	/**
+	 * Copies the automaton into flat arrays. The builder can still be changed afterwards.
+	 */
+	public CompactIntDfa build() {
+		final int[] compactOffsets = new int[size + 1];
+		for (int state = 0; state < size; state++) {
+			compactOffsets[state + 1] = compactOffsets[state] + counts[state];
+		}
+		final int edges = compactOffsets[size];
+		final char[] labels = new char[edges];
+		final int[] targets = new int[edges];
+		for (int state = 0, edge = 0; state < size; state++) {
+			for (int i = offsets[state], end = i + counts[state]; i < end; i++, edge++) {
+				labels[edge] = decombineInt1(arena[i]);
+				targets[edge] = decombineInt2(arena[i]);
+			}
+		}
+		return new CompactIntDfa(compactOffsets, labels, targets, Arrays.copyOf(accepting, (size + 63) >>> 6));
+	}
+
+	@Override
+	public CompactIntDfa freeze() {
+		return build();
+	}
+
+	private static long combineInts(char a, int b) {
+		return (long) a << 32 | b & 0xFFFFFFFFL;
+	}
+
+	private static char decombineInt1(long c) {
+		return (char) (c >> 32);
+	}
+
+	private static int decombineInt2(long c) {
+		return (int) c;
+	}
+}
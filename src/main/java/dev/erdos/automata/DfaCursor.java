@@ -0,0 +1,86 @@
+package dev.erdos.automata;
+
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+import static dev.erdos.automata.SimpleIntDfa.START;
+
+/**
+ * Reads a word one character at a time, eg. while it is typed. The cursor is dead as soon as no continuation can be
+ * accepted, and can be reset to read another word.
+ *
+ * Not thread safe, use one cursor per thread.
+ */
+public final class DfaCursor {
+
+	private final SimpleIntDfa dfa;
+	private final StateAnalysis analysis;
+	private int state;
+	private int length;
+
+	DfaCursor(StateAnalysis analysis) {
+		this.dfa = analysis.dfa();
+		this.analysis = analysis;
+		reset();
+	}
+
+	public void reset() {
+		state = analysis.canReachAccept(START) ? START : -1;
+		length = 0;
+	}
+
+	/**
+	 * Reads a character and returns false iff the cursor is dead afterwards.
+	 */
+	public boolean advance(char c) {
+		length++;
+		if (state == -1) return false;
+		int next = dfa.step(state, c);
+		if (next == -1) next = dfa.step(state, ANY);
+		state = analysis.canReachAccept(next) ? next : -1;
+		return state != -1;
+	}
+
+	/**
+	 * Reads characters until the end or until the cursor is dead. Returns false iff the cursor is dead.
+	 */
+	public boolean advance(CharSequence word) {
+		for (int i = 0, len = word.length(); i < len && state != -1; i++) {
+			advance(word.charAt(i));
+		}
+		return state != -1;
+	}
+
+	/**
+	 * Current state or -1 when dead.
+	 */
+	public int state() {
+		return state;
+	}
+
+	/**
+	 * Number of characters read since the last reset.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * True iff the characters read so far are accepted.
+	 */
+	public boolean accepts() {
+		return dfa.accepts(state);
+	}
+
+	/**
+	 * True iff no continuation of the characters read so far can be accepted.
+	 */
+	public boolean isDead() {
+		return state == -1;
+	}
+
+	/**
+	 * True iff every continuation of the characters read so far is accepted.
+	 */
+	public boolean alwaysAccepts() {
+		return analysis.alwaysAccepts(state);
+	}
+}
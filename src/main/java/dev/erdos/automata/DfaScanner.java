@@ -0,0 +1,317 @@
+package dev.erdos.automata;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+import static dev.erdos.automata.SimpleIntDfa.START;
+
+/**
+ * Finds all matches of an automaton in a text in a single pass.
+ *
+ * A match is a non-empty range [start, end) of the text accepted by the automaton. Matching runs from every
+ * position at once: there is one thread for each automaton state and when two threads meet in the same state only
+ * the one with the earlier start is kept. So the memory used does not depend on the length of the text, only on
+ * the matches waiting to be reported (see Policy.LEFTMOST_LONGEST).
+ *
+ * Thread safe when the automaton is.
+ */
+public final class DfaScanner {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final long MAX_SEGMENT = 1L << 30;
+
+	public enum Policy {
+		/**
+		 * Non-overlapping matches, each one the longest of the matches with the leftmost start. Scanning continues
+		 * after the end of the match. A match is reported when no longer or more left match is possible, and matches
+		 * after it that are found in the meantime wait until then.
+		 */
+		LEFTMOST_LONGEST,
+
+		/**
+		 * For each position where a match ends, the match with the leftmost start. Matches may overlap.
+		 */
+		OVERLAPPING
+	}
+
+	@FunctionalInterface
+	public interface MatchConsumer {
+		void match(long start, long end);
+	}
+
+	private final SimpleIntDfa dfa;
+	private final Policy policy;
+
+	// threads are dropped in states that can not reach an accepting state, null when unknown
+	private final StateAnalysis analysis;
+
+	public DfaScanner(SimpleIntDfa dfa, Policy policy) {
+		this.dfa = dfa;
+		this.policy = policy;
+		this.analysis = null;
+	}
+
+	/**
+	 * Scanner that drops threads as soon as they can not match any more, so pending leftmost longest matches are
+	 * reported earlier and fewer threads are stepped.
+	 */
+	public DfaScanner(StateAnalysis analysis, Policy policy) {
+		this.dfa = analysis.dfa();
+		this.policy = policy;
+		this.analysis = analysis;
+	}
+
+	public void scan(CharSequence text, MatchConsumer consumer) {
+		Scan scan = new Scan(consumer);
+		for (int i = 0, len = text.length(); i < len; i++) {
+			scan.feed(text.charAt(i));
+		}
+		scan.finish();
+	}
+
+	public void scan(Reader reader, MatchConsumer consumer) throws IOException {
+		Scan scan = new Scan(consumer);
+		char[] buffer = new char[BUFFER_SIZE];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			for (int i = 0; i < read; i++) {
+				scan.feed(buffer[i]);
+			}
+		}
+		scan.finish();
+	}
+
+	/**
+	 * Scans a file by mapping it into memory and decoding it in small chunks. Malformed input is an error.
+	 *
+	 * Matches are reported as UTF-16 char indices of the decoded text, like for the other sources, not as byte
+	 * offsets in the file.
+	 */
+	public void scan(Path file, Charset charset, MatchConsumer consumer) throws IOException {
+		Scan scan = new Scan(consumer);
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPORT)
+				.onUnmappableCharacter(CodingErrorAction.REPORT);
+		CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			long position = 0;
+			do {
+				final long length = Math.min(MAX_SEGMENT, size - position);
+				final boolean last = position + length == size;
+				MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				decode(decoder, bytes, chars, last, scan);
+				if (last) {
+					flush(decoder, chars, scan);
+				} else if (bytes.position() == 0) {
+					throw new CharacterCodingException();
+				}
+
+				// bytes of a character split by the segment border are mapped again
+				position += bytes.position();
+			} while (position < size);
+		}
+		scan.finish();
+	}
+
+	private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars, boolean last, Scan scan) throws CharacterCodingException {
+		while (true) {
+			CoderResult result = decoder.decode(bytes, chars, last);
+			feed(chars, scan);
+			if (result.isError()) result.throwException();
+			if (result.isUnderflow()) return;
+		}
+	}
+
+	private static void flush(CharsetDecoder decoder, CharBuffer chars, Scan scan) throws CharacterCodingException {
+		CoderResult result;
+		do {
+			result = decoder.flush(chars);
+			feed(chars, scan);
+			if (result.isError()) result.throwException();
+		} while (result.isOverflow());
+	}
+
+	private static void feed(CharBuffer chars, Scan scan) {
+		chars.flip();
+		while (chars.hasRemaining()) {
+			scan.feed(chars.get());
+		}
+		chars.clear();
+	}
+
+	private int next(int state, char c) {
+		int target = dfa.step(state, c);
+		if (target == -1) target = dfa.step(state, ANY);
+		return (analysis == null || analysis.canReachAccept(target)) ? target : -1;
+	}
+
+	/**
+	 * State of one scan. For leftmost longest matching there is a level for every match that is found but not
+	 * reported yet: the level after it scans from the end of that match.
+	 */
+	private final class Scan {
+		private final MatchConsumer consumer;
+		private final List<Threads> levels = new ArrayList<>();
+
+		// epoch of the last time a state was reached by a thread
+		private int[] seen = new int[Math.max(16, dfa.size())];
+		private int epoch;
+
+		private long position;
+
+		Scan(MatchConsumer consumer) {
+			this.consumer = consumer;
+			levels.add(new Threads());
+			levels.get(0).spawn(0);
+			check();
+		}
+
+		void feed(char c) {
+			position++;
+			for (int i = 0; i < levels.size(); i++) {
+				levels.get(i).advance(c);
+			}
+			levels.get(levels.size() - 1).spawn(position);
+			check();
+		}
+
+		void finish() {
+			for (Threads level : levels) {
+				if (level.bestStart >= 0) {
+					consumer.match(level.bestStart, level.bestEnd);
+				}
+			}
+			levels.clear();
+		}
+
+		private void check() {
+			if (policy == Policy.OVERLAPPING) {
+				Threads threads = levels.get(0);
+				int idx = threads.firstAccepting();
+				if (idx != -1) {
+					consumer.match(threads.starts[idx], position);
+				}
+				return;
+			}
+
+			for (int i = 0; i < levels.size(); i++) {
+				Threads threads = levels.get(i);
+				int idx = threads.firstAccepting();
+				if (idx == -1) continue;
+
+				long start = threads.starts[idx];
+				if (threads.bestStart < 0 || start <= threads.bestStart) {
+					threads.bestStart = start;
+					threads.bestEnd = position;
+					threads.truncate(start);
+
+					// scanning after the match starts over from here
+					while (levels.size() > i + 1) {
+						levels.remove(levels.size() - 1);
+					}
+					Threads after = new Threads();
+					after.spawn(position);
+					levels.add(after);
+				}
+			}
+
+			// the first match is final when there are no threads left that could make it longer or move it left
+			while (levels.size() > 1 && levels.get(0).size == 0) {
+				Threads first = levels.remove(0);
+				consumer.match(first.bestStart, first.bestEnd);
+			}
+		}
+
+		private int nextEpoch() {
+			if (epoch == Integer.MAX_VALUE) {
+				Arrays.fill(seen, 0);
+				epoch = 0;
+			}
+			return ++epoch;
+		}
+
+		private boolean visit(int state, int threadsEpoch) {
+			if (state >= seen.length) {
+				seen = Arrays.copyOf(seen, Math.max(state + 1, seen.length * 2));
+			}
+			if (seen[state] == threadsEpoch) {
+				return false;
+			}
+			seen[state] = threadsEpoch;
+			return true;
+		}
+
+		/**
+		 * Threads in ascending order of their start positions, at most one in each state.
+		 */
+		private final class Threads {
+			int[] states = new int[16];
+			long[] starts = new long[16];
+			int size;
+			int threadsEpoch = nextEpoch();
+
+			// best match found so far or -1
+			long bestStart = -1;
+			long bestEnd = -1;
+
+			void advance(char c) {
+				threadsEpoch = nextEpoch();
+				int count = 0;
+				for (int i = 0; i < size; i++) {
+					final int target = next(states[i], c);
+					if (target != -1 && visit(target, threadsEpoch)) {
+						states[count] = target;
+						starts[count] = starts[i];
+						count++;
+					}
+				}
+				size = count;
+			}
+
+			void spawn(long start) {
+				if (analysis != null && !analysis.canReachAccept(START)) return;
+				if (!visit(START, threadsEpoch)) return; // a thread with earlier start is in the start state
+				if (size == states.length) {
+					states = Arrays.copyOf(states, size * 2);
+					starts = Arrays.copyOf(starts, size * 2);
+				}
+				states[size] = START;
+				starts[size] = start;
+				size++;
+			}
+
+			// index of first thread in an accepting state that does not start at the current position, or -1
+			int firstAccepting() {
+				for (int i = 0; i < size && starts[i] < position; i++) {
+					if (dfa.accepts(states[i])) return i;
+				}
+				return -1;
+			}
+
+			// drops threads starting after position
+			void truncate(long start) {
+				while (size > 0 && starts[size - 1] > start) {
+					size--;
+				}
+			}
+		}
+	}
+}
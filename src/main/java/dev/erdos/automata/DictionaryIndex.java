@@ -0,0 +1,185 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+import static dev.erdos.automata.SimpleIntDfa.START;
+
+/**
+ * Set of terms stored as a minimal acyclic automaton (DAWG).
+ *
+ * The automaton is built incrementally from a sorted list of terms (Daciuk et al.) so it stays minimal during the
+ * construction. Searching with a SimpleIntDfa walks both automata in lockstep and skips every branch where the
+ * query automaton has no transition.
+ */
+public final class DictionaryIndex {
+
+	private final CompactIntDfa automaton;
+	private final int terms;
+	private final int maxLength;
+
+	private DictionaryIndex(CompactIntDfa automaton, int terms, int maxLength) {
+		this.automaton = automaton;
+		this.terms = terms;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Builds index from terms in ascending order. Duplicates are allowed.
+	 *
+	 * @throws IllegalArgumentException when terms are not sorted
+	 */
+	public static DictionaryIndex of(Iterable<? extends CharSequence> sortedTerms) {
+		Builder builder = new Builder();
+		for (CharSequence term : sortedTerms) {
+			builder.add(term);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Automaton accepting exactly the terms.
+	 */
+	public SimpleIntDfa automaton() {
+		return automaton;
+	}
+
+	/**
+	 * Number of distinct terms.
+	 */
+	public int size() {
+		return terms;
+	}
+
+	public boolean contains(CharSequence term) {
+		return automaton.test(term);
+	}
+
+	/**
+	 * Terms accepted by the query in ascending order.
+	 */
+	public List<String> search(SimpleIntDfa query) {
+		List<String> result = new ArrayList<>();
+		search(query, result::add);
+		return result;
+	}
+
+	/**
+	 * Calls consumer with all terms accepted by the query in ascending order.
+	 */
+	public void search(SimpleIntDfa query, Consumer<String> consumer) {
+		search(query, null, START, START, new char[maxLength], 0, consumer);
+	}
+
+	/**
+	 * Terms accepted by the analyzed query in ascending order.
+	 */
+	public List<String> search(StateAnalysis query) {
+		List<String> result = new ArrayList<>();
+		search(query, result::add);
+		return result;
+	}
+
+	/**
+	 * Calls consumer with all terms accepted by the query in ascending order. Branches are skipped as soon as the
+	 * query can not accept any more, and once the query accepts every continuation the terms are listed without
+	 * stepping the query.
+	 */
+	public void search(StateAnalysis query, Consumer<String> consumer) {
+		if (query.canReachAccept(START)) {
+			search(query.dfa(), query, START, START, new char[maxLength], 0, consumer);
+		}
+	}
+
+	private void search(SimpleIntDfa query, StateAnalysis analysis, int state, int queryState, char[] prefix, int depth, Consumer<String> consumer) {
+		if (analysis != null && analysis.alwaysAccepts(queryState)) {
+			terms(state, prefix, depth, consumer);
+			return;
+		}
+
+		if (automaton.accepts(state) && query.accepts(queryState)) {
+			consumer.accept(new String(prefix, 0, depth));
+		}
+
+		for (int i = 0, max = automaton.labels(state); i < max; i++) {
+			final char c = automaton.label(state, i);
+			int next = query.step(queryState, c);
+			if (next == -1) next = query.step(queryState, ANY);
+			if (next == -1) continue; // dead state in query, skip whole branch
+			if (analysis != null && !analysis.canReachAccept(next)) continue;
+
+			prefix[depth] = c;
+			search(query, analysis, automaton.target(state, i), next, prefix, depth + 1, consumer);
+		}
+	}
+
+	// all terms below state
+	private void terms(int state, char[] prefix, int depth, Consumer<String> consumer) {
+		if (automaton.accepts(state)) {
+			consumer.accept(new String(prefix, 0, depth));
+		}
+		for (int i = 0, max = automaton.labels(state); i < max; i++) {
+			prefix[depth] = automaton.label(state, i);
+			terms(automaton.target(state, i), prefix, depth + 1, consumer);
+		}
+	}
+
+	/**
+	 * Incremental construction of minimal acyclic automaton from sorted input, see DawgBuilder.
+	 */
+	public static final class Builder {
+
+		private final DawgBuilder<Boolean> dawg = new DawgBuilder<>();
+
+		private int terms;
+		private int maxLength;
+
+		public Builder() {}
+
+		/**
+		 * Adds a term that is not smaller than the previous one.
+		 */
+		public Builder add(CharSequence term) {
+			if (dawg.add(term, Boolean.TRUE)) {
+				terms++;
+				maxLength = Math.max(maxLength, term.length());
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the index. States are renumbered in depth first order from the root.
+		 */
+		public DictionaryIndex build() {
+			final int[] order = dawg.finish();
+			final int count = order.length;
+			final int[] ids = new int[dawg.states()];
+			int edgeCount = 0;
+			for (int id = 0; id < count; id++) {
+				ids[order[id]] = id;
+				edgeCount += dawg.labels(order[id]);
+			}
+
+			final int[] offsets = new int[count + 1];
+			final char[] labels = new char[edgeCount];
+			final int[] targets = new int[edgeCount];
+			final long[] accepts = new long[(count + 63) >>> 6];
+			for (int id = 0, edge = 0; id < count; id++) {
+				final int state = order[id];
+				offsets[id] = edge;
+				for (int i = 0, max = dawg.labels(state); i < max; i++, edge++) {
+					labels[edge] = dawg.label(state, i);
+					targets[edge] = ids[dawg.target(state, i)];
+				}
+				if (dawg.payload(state) != null) {
+					accepts[id >>> 6] |= 1L << id;
+				}
+			}
+			offsets[count] = edgeCount;
+
+			return new DictionaryIndex(new CompactIntDfa(offsets, labels, targets, accepts), terms, maxLength);
+		}
+	}
+}
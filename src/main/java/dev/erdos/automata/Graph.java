@@ -1,11 +1,13 @@
 package dev.erdos.automata;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Queue;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.function.ToIntFunction;
 
 import static java.util.Collections.singleton;
@@ -48,4 +50,117 @@ public final class Graph {
 			visited.add(item);
 		}
 	}
+
+	/**
+	 * Called with every item of a traversal once. Child items are passed to the consumer.
+	 */
+	@FunctionalInterface
+	interface LongStep {
+		void visit(long item, LongConsumer children);
+	}
+
+	/**
+	 * Breadth first traversal of items encoded as longs (eg. pairs of states) without boxing.
+	 */
+	static void breadthFirstTraversal(long root, LongStep step) {
+		final LongQueue queue = new LongQueue();
+		final LongSet visited = new LongSet();
+		final LongConsumer children = child -> {
+			if (visited.add(child)) queue.add(child);
+		};
+		children.accept(root);
+		while (!queue.isEmpty()) {
+			step.visit(queue.remove(), children);
+		}
+	}
+
+	// growable ring buffer
+	static final class LongQueue {
+		private long[] items = new long[16];
+		private int head;
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void add(long item) {
+			if (size == items.length) {
+				final long[] grown = new long[items.length * 2];
+				final int tail = items.length - head;
+				System.arraycopy(items, head, grown, 0, tail);
+				System.arraycopy(items, 0, grown, tail, head);
+				items = grown;
+				head = 0;
+			}
+			items[(head + size) & (items.length - 1)] = item;
+			size++;
+		}
+
+		long remove() {
+			assert size > 0;
+			final long item = items[head];
+			head = (head + 1) & (items.length - 1);
+			size--;
+			return item;
+		}
+	}
+
+	// open addressing hash set, zero is stored in a flag because it marks the empty slots
+	static final class LongSet {
+		private long[] slots = new long[32];
+		private int size;
+		private boolean containsZero;
+
+		/**
+		 * Returns false when item was already in the set.
+		 */
+		boolean add(long item) {
+			if (item == 0) {
+				final boolean added = !containsZero;
+				containsZero = true;
+				return added;
+			}
+			if (2 * (size + 1) > slots.length) {
+				grow();
+			}
+			final int mask = slots.length - 1;
+			for (int slot = hash(item) & mask; ; slot = (slot + 1) & mask) {
+				if (slots[slot] == item) return false;
+				if (slots[slot] == 0) {
+					slots[slot] = item;
+					size++;
+					return true;
+				}
+			}
+		}
+
+		boolean contains(long item) {
+			if (item == 0) return containsZero;
+			final int mask = slots.length - 1;
+			for (int slot = hash(item) & mask; ; slot = (slot + 1) & mask) {
+				if (slots[slot] == item) return true;
+				if (slots[slot] == 0) return false;
+			}
+		}
+
+		private void grow() {
+			final long[] old = slots;
+			slots = new long[old.length * 2];
+			final int mask = slots.length - 1;
+			for (long item : old) {
+				if (item == 0) continue;
+				int slot = hash(item) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = item;
+			}
+		}
+
+		private static int hash(long item) {
+			final long h = item * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
 }
@@ -1,19 +1,22 @@
 package dev.erdos.automata;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 import static dev.erdos.automata.Graph.breadthFirstTraversal;
 import static dev.erdos.automata.SimpleIntDfa.ANY;
+import static dev.erdos.automata.SimpleIntDfa.START;
 import static java.lang.Math.min;
 
 @SuppressWarnings({"SameParameterValue", "ForLoopReplaceableByForEach"})
 public final class IntDfaOperations {
 
 	private final Map<Integer, Integer> otherStateToNewLocalState = new HashMap<>();
-	private final List<Long> result = new ArrayList<>();
 	private final List<Integer> bufferForConcat = new ArrayList<>();
 
 	public <T extends WritableIntDfa> T union(T self, SimpleIntDfa other) {
@@ -48,14 +51,220 @@ public final class IntDfaOperations {
 		return self;
 	}
 
+	/**
+	 * Adds the words of all others to self and removes the states left unused.
+	 */
+	public <T> MutableArrayDFA<T> unionAll(MutableArrayDFA<T> self, Iterable<? extends SimpleIntDfa> others) {
+		for (SimpleIntDfa other : others) {
+			union(self, other);
+		}
+		return self.trim();
+	}
+
+	/**
+	 * Concatenates others to self one after the other and removes the states left unused.
+	 */
+	public <T> MutableArrayDFA<T> concatAll(MutableArrayDFA<T> self, Iterable<? extends SimpleIntDfa> others) {
+		for (SimpleIntDfa other : others) {
+			concat(self, other);
+		}
+		return self.trim();
+	}
+
+	/**
+	 * Returns a new minimal automaton that accepts the same words. Accepting states keep their labels. Lazy automata
+	 * are explored completely first.
+	 */
+	public <T> MutableArrayDFA<T> minimize(SimpleIntDfa dfa) {
+		assert dfa != null;
+		return new Minimization<T>(dfa).result();
+	}
+
+	/**
+	 * Lazy automaton accepting words accepted by both.
+	 */
+	public SimpleIntDfa intersect(SimpleIntDfa self, SimpleIntDfa other) {
+		assert self != null;
+		assert other != null;
+		return new ProductIntDfa(self, other, ProductIntDfa.Operation.INTERSECT);
+	}
+
+	/**
+	 * Lazy automaton accepting words accepted by self but not by other.
+	 */
+	public SimpleIntDfa minus(SimpleIntDfa self, SimpleIntDfa other) {
+		assert self != null;
+		assert other != null;
+		return new ProductIntDfa(self, other, ProductIntDfa.Operation.MINUS);
+	}
+
+	/**
+	 * Lazy automaton accepting all words not accepted by dfa.
+	 */
+	public SimpleIntDfa complement(SimpleIntDfa dfa) {
+		assert dfa != null;
+		MutableArrayDFA<Object> all = new MutableArrayDFA<>();
+		all.connect(START, ANY, START);
+		all.accept(START);
+		return minus(all, dfa);
+	}
+
+	/**
+	 * Automaton accepting words accepted by both, over ranges.
+	 */
+	public MutableRangeDFA intersect(RangeIntDfa self, RangeIntDfa other) {
+		return product(self, other, ProductIntDfa.Operation.INTERSECT);
+	}
+
+	/**
+	 * Automaton accepting words accepted by any of them, over ranges.
+	 */
+	public MutableRangeDFA union(RangeIntDfa self, RangeIntDfa other) {
+		return product(self, other, ProductIntDfa.Operation.UNION);
+	}
+
+	/**
+	 * Automaton accepting words accepted by self but not by other, over ranges.
+	 */
+	public MutableRangeDFA minus(RangeIntDfa self, RangeIntDfa other) {
+		return product(self, other, ProductIntDfa.Operation.MINUS);
+	}
+
+	/**
+	 * Automaton accepting all words not accepted by dfa, over ranges.
+	 */
+	public MutableRangeDFA complement(RangeIntDfa dfa) {
+		final MutableRangeDFA all = new MutableRangeDFA();
+		all.connect(START, Character.MIN_VALUE, Character.MAX_VALUE, START);
+		all.accept(START);
+		return minus(all, dfa);
+	}
+
+	// product of the reachable pairs of states. the ranges of a pair are cut where a range of either state ends.
+	private MutableRangeDFA product(RangeIntDfa left, RangeIntDfa right, ProductIntDfa.Operation operation) {
+		assert left != null;
+		assert right != null;
+		final MutableRangeDFA result = new MutableRangeDFA();
+		final StateSets pairs = new StateSets(1, 16);
+		final long[] buffer = {combineInts(START, START)};
+		pairs.add(buffer, 0, pairs.hash(buffer, 0));
+
+		// pairs are added in discovery order, so ids of the unprocessed ones form the queue
+		for (int state = 0; state < pairs.size(); state++) {
+			final int a = decombineInt1(pairs.sets()[state]);
+			final int b = decombineInt2(pairs.sets()[state]);
+			final boolean acceptsA = left.accepts(a);
+			final boolean acceptsB = right.accepts(b);
+			switch (operation) {
+				case UNION: if (acceptsA || acceptsB) result.accept(state); break;
+				case INTERSECT: if (acceptsA && acceptsB) result.accept(state); break;
+				default: if (acceptsA && !acceptsB) result.accept(state);
+			}
+
+			final int maxA = (a == -1) ? 0 : left.ranges(a);
+			final int maxB = (b == -1) ? 0 : right.ranges(b);
+			int i = 0;
+			int j = 0;
+			for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; ) {
+				while (i < maxA && left.to(a, i) < c) i++;
+				while (j < maxB && right.to(b, j) < c) j++;
+
+				// target of c in each and the last character with the same targets
+				final boolean inA = i < maxA && left.from(a, i) <= c;
+				final boolean inB = j < maxB && right.from(b, j) <= c;
+				final int targetA = inA ? left.target(a, i) : -1;
+				final int targetB = inB ? right.target(b, j) : -1;
+				final int endA = inA ? left.to(a, i) : (i < maxA ? left.from(a, i) - 1 : Character.MAX_VALUE);
+				final int endB = inB ? right.to(b, j) : (j < maxB ? right.from(b, j) - 1 : Character.MAX_VALUE);
+				final int end = min(endA, endB);
+
+				final boolean dead;
+				switch (operation) {
+					case UNION: dead = targetA == -1 && targetB == -1; break;
+					case INTERSECT: dead = targetA == -1 || targetB == -1; break;
+					default: dead = targetA == -1;
+				}
+				if (!dead) {
+					buffer[0] = combineInts(targetA, targetB);
+					final int hash = pairs.hash(buffer, 0);
+					int target = pairs.find(buffer, 0, hash);
+					if (target == -1) {
+						target = pairs.add(buffer, 0, hash);
+						result.newState();
+					}
+					result.connect(state, (char) c, (char) end, target);
+				}
+				c = end + 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the states reachable from the start state, numbered in breadth first order.
+	 */
+	public <T> MutableArrayDFA<T> materialize(SimpleIntDfa dfa) {
+		return materialize(dfa, new MutableArrayDFA<>());
+	}
+
+	/**
+	 * Copies the states reachable from the start state into an automaton that has only its start state.
+	 */
+	public <W extends WritableIntDfa> W materialize(SimpleIntDfa dfa, W result) {
+		assert dfa != null;
+		assert result.size() == 1 && result.labels(START) == 0;
+
+		// ids in the result by source state, new states are queued in the order of their ids
+		int[] ids = new int[16];
+		int[] queue = new int[16];
+		Arrays.fill(ids, -1);
+		ids[START] = START;
+		queue[0] = START;
+		int tail = 1;
+
+		for (int head = 0; head < tail; head++) {
+			final int state = queue[head];
+			if (dfa.accepts(state)) {
+				copyAcceptance(dfa, state, result, head);
+			}
+			for (int i = 0, max = dfa.labels(state); i < max; i++) {
+				final int target = dfa.target(state, i);
+				if (target >= ids.length) {
+					final int length = ids.length;
+					ids = Arrays.copyOf(ids, Math.max(length * 2, target + 1));
+					Arrays.fill(ids, length, ids.length, -1);
+				}
+				if (ids[target] == -1) {
+					ids[target] = result.newState();
+					if (tail == queue.length) {
+						queue = Arrays.copyOf(queue, tail * 2);
+					}
+					queue[tail++] = target;
+				}
+				result.connect(head, dfa.label(state, i), ids[target]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates every state of a lazy automaton such as ProductIntDfa, so that size() stays the same afterwards.
+	 *
+	 * @return the number of states
+	 */
+	static int explore(SimpleIntDfa dfa) {
+		for (int state = 0; state < dfa.size(); state++) {
+			dfa.labels(state);
+		}
+		return dfa.size();
+	}
+
 	private void mergeNodes(WritableIntDfa self, SimpleIntDfa other, int selfRoot, int otherRoot) {
 		long root = combineInts(selfRoot, otherRoot);
-		breadthFirstTraversal(root, state -> mergeNodeStep(self, other,  decombineInt1(state), decombineInt2(state)));
+		breadthFirstTraversal(root, (state, result) -> mergeNodeStep(self, other, decombineInt1(state), decombineInt2(state), result));
 	}
 
-	private <T extends WritableIntDfa> List<Long> mergeNodeStep(T self, SimpleIntDfa other, int stateSelf, int stateOther) {
-		result.clear();
-
+	private <T extends WritableIntDfa> void mergeNodeStep(T self, SimpleIntDfa other, int stateSelf, int stateOther, LongConsumer result) {
 		final int starSelf = self.step(stateSelf, ANY);
 		final int starOther = other.step(stateOther, ANY);
 		int selfLabelMax = self.labels(stateSelf); // we mutate self so max nr of edges may change
@@ -63,7 +272,7 @@ public final class IntDfaOperations {
 
 		// cimkek atmasolasa itt.
 		if (other.accepts(stateOther)) {
-			self.accept(stateSelf);
+			copyAcceptance(other, stateOther, self, stateSelf);
 		}
 
 		int selfLabelIdx = 0;
@@ -76,7 +285,7 @@ public final class IntDfaOperations {
 				// > csak a self-ben van meg
 				if (starOther != -1) {
 					int selfTarget = self.target(stateSelf, selfLabelIdx);
-					result.add(combineInts(selfTarget, starOther));
+					result.accept(combineInts(selfTarget, starOther));
 				}
 				selfLabelIdx++;
 			} else if (selfLabelIdx == selfLabelMax || otherLabelIdx < otherLabelMax && selfLabelChar > otherLabelChar) {
@@ -87,7 +296,7 @@ public final class IntDfaOperations {
 						? otherStateToNewLocalState.computeIfAbsent(otherTarget, __ -> self.newState())
 						: self.copyWithOutgoingEdges(starSelf);
 				self.connect(stateSelf, otherLabelChar, newSelfState);
-				result.add(combineInts(newSelfState, otherTarget));
+				result.accept(combineInts(newSelfState, otherTarget));
 				otherLabelIdx++;
 
 				selfLabelIdx++; selfLabelMax++; // because we inserted new transition to local
@@ -95,13 +304,38 @@ public final class IntDfaOperations {
 				// state is present in both collections
 				int selfTarget = self.target(stateSelf, selfLabelIdx);
 				int otherTarget = other.target(stateOther, otherLabelIdx);
-				result.add(combineInts(selfTarget, otherTarget));
+				result.accept(combineInts(selfTarget, otherTarget));
 				selfLabelIdx++;
 				otherLabelIdx++;
 			}
 		}
+	}
 
-		return result;
+	/**
+	 * Labels of an accepting state, empty when the automaton has no labels.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> List<T> values(SimpleIntDfa dfa, int state) {
+		if (dfa instanceof MutableArrayDFA) {
+			return ((MutableArrayDFA<T>) dfa).values(state);
+		} else if (dfa instanceof ProductIntDfa) {
+			return ((ProductIntDfa) dfa).values(state);
+		}
+		return Collections.emptyList();
+	}
+
+	// marks target state accepting with the labels of the source state
+	@SuppressWarnings("unchecked")
+	private static void copyAcceptance(SimpleIntDfa source, int sourceState, WritableIntDfa target, int targetState) {
+		target.accept(targetState);
+		if (target instanceof MutableArrayDFA) {
+			final MutableArrayDFA<Object> labeled = (MutableArrayDFA<Object>) target;
+			for (Object value : values(source, sourceState)) {
+				if (!labeled.values(targetState).contains(value)) {
+					labeled.accept(targetState, value);
+				}
+			}
+		}
 	}
 
 	private static long combineInts(int a, int b) {
@@ -0,0 +1,178 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+
+/**
+ * Deterministic Finite Automaton that is built from a NDFA on the fly.
+ *
+ * States are sets of NDFA states and are only created when a transition first reaches them. When the states would
+ * not fit in the memory budget any more, all of them are dropped and the cache is rebuilt from the current state.
+ * So a state id is only valid until the next reset (see resets()), parse() and test() are safe to call any time.
+ *
+ * Not thread safe.
+ */
+public final class LazyIntDfa implements SimpleIntDfa {
+
+	private static final int UNKNOWN = -2;
+
+	private final BitParallelNfa nfa;
+	private final int words;
+	private final int letters;
+	private final int maxStates;
+
+	private final StateSets states;
+
+	// target of state i on letter a is at [i * letters + a]
+	private int[] transitions;
+
+	// letters of the explicit edges of state i, '*' (letter 0) first, null until listed
+	private int[][] edges;
+
+	private long[] accepting;
+
+	private final long[] start;
+	private final long[] buffer;
+
+	private long resets;
+
+	LazyIntDfa(BitParallelNfa nfa, long memoryBudget) {
+		this.nfa = nfa;
+		this.words = nfa.words();
+		this.letters = nfa.letters();
+
+		// set, transitions, hash and two slots in the hash table.
+		final long bytesPerState = 8L * words + 4L * letters + 4L + 8L;
+		this.maxStates = (int) Math.max(2, Math.min(memoryBudget / bytesPerState, Integer.MAX_VALUE / letters / 2));
+
+		this.start = new long[words];
+		this.buffer = new long[words];
+		nfa.start(start, 0);
+
+		final int capacity = Math.min(16, maxStates);
+		this.states = new StateSets(words, capacity);
+		this.transitions = new int[capacity * letters];
+		this.edges = new int[capacity][];
+		this.accepting = new long[(capacity + 63) >>> 6];
+		reset();
+	}
+
+	// drops all states and adds start state.
+	private void reset() {
+		states.clear();
+		Arrays.fill(accepting, 0L);
+		Arrays.fill(edges, null);
+		add(start, states.hash(start, 0));
+	}
+
+	private int add(long[] set, int hash) {
+		final int id = states.add(set, 0, hash);
+		if (id * letters == transitions.length) {
+			final int capacity = (id + 1) * 2;
+			transitions = Arrays.copyOf(transitions, capacity * letters);
+			edges = Arrays.copyOf(edges, capacity);
+			accepting = Arrays.copyOf(accepting, (capacity + 63) >>> 6);
+		}
+		Arrays.fill(transitions, id * letters, (id + 1) * letters, UNKNOWN);
+		if (nfa.accepts(set, 0)) {
+			accepting[id >>> 6] |= 1L << id;
+		}
+		return id;
+	}
+
+	// target state on letter, computes and caches it if needed.
+	private int transition(int state, int letter, boolean mayReset) {
+		final int idx = state * letters + letter;
+		int target = transitions[idx];
+		if (target != UNKNOWN) {
+			return target;
+		}
+
+		if (!nfa.step(states.sets(), state * words, letter, buffer, 0)) {
+			target = -1;
+		} else {
+			final int hash = states.hash(buffer, 0);
+			target = states.find(buffer, 0, hash);
+			if (target == -1) {
+				if (mayReset && states.size() >= maxStates) {
+					// source state is dropped too, so the transition is not recorded.
+					resets++;
+					reset();
+					target = states.find(buffer, 0, hash);
+					return (target == -1) ? add(buffer, hash) : target;
+				}
+				target = add(buffer, hash);
+			}
+		}
+		transitions[idx] = target;
+		return target;
+	}
+
+	/**
+	 * Number of states created so far since the last reset.
+	 */
+	@Override
+	public int size() {
+		return states.size();
+	}
+
+	/**
+	 * Number of times the cache was dropped because it was full.
+	 */
+	public long resets() {
+		return resets;
+	}
+
+	@Override
+	public int step(int state, char c) {
+		final int letter = nfa.letter(c);
+		if (letter == 0 && c != ANY) return -1;
+		return transition(state, letter, true);
+	}
+
+	@Override
+	public int parse(CharSequence word) {
+		int state = START;
+		for (int i = 0, len = word.length(); i < len && state != -1; i++) {
+			state = transition(state, nfa.letter(word.charAt(i)), true);
+		}
+		return state;
+	}
+
+	@Override
+	public char label(int state, int n) {
+		return nfa.letterChar(edges(state)[n]);
+	}
+
+	@Override
+	public int labels(int state) {
+		return edges(state).length;
+	}
+
+	@Override
+	public int target(int state, int n) {
+		return transitions[state * letters + edges(state)[n]];
+	}
+
+	// edges are listed without resets so the states stay valid. the cache may grow over its budget here.
+	private int[] edges(int state) {
+		int[] known = edges[state];
+		if (known != null) return known;
+
+		final int any = transition(state, 0, false);
+		final int[] result = new int[letters];
+		int count = 0;
+		if (any != -1) result[count++] = 0;
+		for (int letter = 1; letter < letters; letter++) {
+			if (transition(state, letter, false) != any) result[count++] = letter;
+		}
+		// the array may have been grown by transition()
+		known = Arrays.copyOf(result, count);
+		edges[state] = known;
+		return known;
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && (accepting[state >>> 6] & (1L << state)) != 0;
+	}
+}
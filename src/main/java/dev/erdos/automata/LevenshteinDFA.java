@@ -1,18 +1,45 @@
 package dev.erdos.automata;
 
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Idea: all automata with the same state count are isomorphic when all of their letters are unique.
- * So we can quickly recreate common automata layouts just by caching them and renaming the edges using a lookup table.
+ * Idea: the automata of two words are isomorphic when their letters repeat at the same positions: "abca" and
+ * "xyzx" only differ in the names of the edges. So we can quickly recreate common automata layouts just by caching
+ * them by the pattern of the word ("abca" for both) and renaming the edges using a lookup table.
+ *
+ * Templates are evicted in least recently used order when their estimated size exceeds the memory budget.
+ *
+ * Thread safe: one instance can be shared by all threads.
  */
 public final class LevenshteinDFA {
 
+	/**
+	 * Default memory budget of the template cache in bytes.
+	 */
+	public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+	// template letters are 'a', 'b', ... so they must stay below NDFA.EPSILON, which is not a letter in an NDFA
+	private static final int MAX_TEMPLATE_LETTERS = NDFA.EPSILON - 'a';
+
 	private final int distance;
+	private final long maxCacheBytes;
 
 	public LevenshteinDFA(int distance) {
+		this(distance, DEFAULT_CACHE_BYTES);
+	}
+
+	/**
+	 * @param maxCacheBytes estimated size of the cached templates is kept below this many bytes
+	 */
+	public LevenshteinDFA(int distance, long maxCacheBytes) {
 		this.distance = distance;
+		this.maxCacheBytes = maxCacheBytes;
 		assert distance >= 0;
+		assert maxCacheBytes >= 0;
 	}
 
 	public static boolean uniqueLetters(CharSequence cs) {
@@ -21,7 +48,10 @@ public final class LevenshteinDFA {
 			char  c = cs.charAt(i);
 			long off = 1L << (c % 64);
 			if ((off & mask) != 0) {
-				return false;
+				// same bucket, compare with the letters before
+				for (int j = 0; j < i; j++) {
+					if (cs.charAt(j) == c) return false;
+				}
 			} else {
 				mask |= off;
 			}
@@ -33,157 +63,258 @@ public final class LevenshteinDFA {
 		return NDFA.levenshtein(cs, distance).dfa();
 	}
 
-	private final SimpleIntDfa[] cache = new SimpleIntDfa[64];
-	private final char[] targetMappingCache = new char[64];
-	{
-		targetMappingCache[0] = SimpleIntDfa.ANY;
-	}
+	// templates by pattern in least recently used order. guarded by itself.
+	private final LinkedHashMap<String, Template> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long cacheBytes;
 
-	int cacheHitCount = 0;
-	int uniqueCount = 0;
+	private final LongAdder cacheHitCount = new LongAdder();
+	private final LongAdder cacheMissCount = new LongAdder();
+	private final LongAdder uniqueCount = new LongAdder();
 
 	public SimpleIntDfa cached(CharSequence cs) {
-		if (!uniqueLetters(cs)) {
-			return factor(cs, distance);
-		} else {
-			uniqueCount++;
-			int length = cs.length();
-			SimpleIntDfa template = template(length);
+		final int length = cs.length();
 
-			for (int i = 0; i < length; i++) {
-				targetMappingCache[i + 1] = cs.charAt(i);
+		// distinct letters in order of first occurrence and the pattern of the word built from template letters
+		final char[] letters = new char[length];
+		final char[] pattern = new char[length];
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = cs.charAt(i);
+			int k = 0;
+			while (k < count && letters[k] != c) k++;
+			if (k == count) {
+				if (count == MAX_TEMPLATE_LETTERS || c == SimpleIntDfa.ANY) {
+					return factor(cs, distance);
+				}
+				letters[count++] = c;
 			}
-			return new IsomorphicIntDfa(template, sourceMapping, targetMappingCache);
+			pattern[i] = IsomorphicIntDfa.templateLetter(k);
+		}
+		if (count == length) {
+			uniqueCount.increment();
 		}
+		return new IsomorphicIntDfa(template(new String(pattern)), Arrays.copyOf(letters, count));
 	}
 
-	private static long combineInts(char a, int b) {
-		return (long) a << 32 | b & 0xFFFFFFFFL;
+	/**
+	 * Number of calls served from an already cached template.
+	 */
+	public long cacheHits() {
+		return cacheHitCount.sum();
 	}
 
-	private static char decombineInt1(long c) {
-		return (char) (c >> 32);
+	/**
+	 * Number of templates built.
+	 */
+	public long cacheMisses() {
+		return cacheMissCount.sum();
 	}
 
-	private static int decombineInt2(long c) {
-		return (int) c;
+	/**
+	 * Number of calls with words of unique letters.
+	 */
+	public long uniqueWords() {
+		return uniqueCount.sum();
 	}
 
-	private SimpleIntDfa template(int length) {
-		SimpleIntDfa template = cache[length];
-		if (template == null) {
-			CharSequence seq = new CharSequence() {
-				@Override
-				public int length() {
-					return length;
-				}
+	/**
+	 * Estimated size of the cached templates in bytes.
+	 */
+	public long cacheBytes() {
+		synchronized (cache) {
+			return cacheBytes;
+		}
+	}
 
-				@Override
-				public char charAt(int index) {
-					return (char) ('a' + index);
-				}
+	private SimpleIntDfa template(String pattern) {
+		final Template entry;
+		synchronized (cache) {
+			final Template known = cache.get(pattern);
+			if (known != null) {
+				entry = known;
+				cacheHitCount.increment();
+			} else {
+				entry = new Template();
+				cache.put(pattern, entry);
+				cacheMissCount.increment();
+			}
+		}
 
-				@Override
-				public CharSequence subSequence(int start, int end) {
-					throw new RuntimeException("Not implemented!");
-				}
-			};
-			template = cache[length] = factor(seq, distance);
-		} else {
-			cacheHitCount++;
+		// built outside of the cache lock, so other patterns are not blocked meanwhile
+		synchronized (entry) {
+			if (entry.dfa == null) {
+				final CompactIntDfa dfa = factor(pattern, distance).freeze();
+				entry.bytes = bytes(dfa);
+				entry.dfa = dfa;
+				admit(pattern, entry);
+			}
+			return entry.dfa;
 		}
-		return template;
 	}
 
-	private static final char[] sourceMapping = new char[128];
-	static {
-		sourceMapping[0] = SimpleIntDfa.ANY;
-		for(int i = 0; i < sourceMapping.length - 1; i++) {
-			sourceMapping[i + 1] = (char) ('a' + i);
+	// accounts for a built template and evicts the least recently used ones over the budget
+	private void admit(String pattern, Template entry) {
+		synchronized (cache) {
+			if (cache.get(pattern) != entry) return; // evicted while building
+			cacheBytes += entry.bytes;
+			final Iterator<Map.Entry<String, Template>> it = cache.entrySet().iterator();
+			while (cacheBytes > maxCacheBytes && it.hasNext()) {
+				final Template eldest = it.next().getValue();
+				it.remove();
+				cacheBytes -= eldest.bytes;
+			}
 		}
 	}
 
-	private static class IsomorphicIntDfa implements SimpleIntDfa {
-		private final long[][] transitions;
-		private final int[] acceptors;
+	// estimated heap size of a frozen automaton
+	private static long bytes(SimpleIntDfa dfa) {
+		long edges = 0;
+		for (int state = 0; state < dfa.size(); state++) {
+			edges += dfa.labels(state);
+		}
+		final long headers = 4 * 16;
+		return headers + 4L * (dfa.size() + 1) + 6 * edges + 8L * ((dfa.size() + 63) >>> 6);
+	}
 
-		IsomorphicIntDfa(SimpleIntDfa template, char[] oldLabels, char[] newLabels) {
-			transitions = new long[template.size()][];
+	private static final class Template {
+		// null until built, guarded by the instance
+		private CompactIntDfa dfa;
+		private long bytes;
+	}
 
-			int acceptCount = 0;
+	/**
+	 * Template with its letters renamed to the distinct letters of a word. Only the mapping is stored, edges are read from the
+	 * shared template.
+	 */
+	private static final class IsomorphicIntDfa implements SimpleIntDfa {
+		private final SimpleIntDfa template;
 
-			for(int state = 0, maxState = template.size(); state < maxState; state++) {
-				int labels = template.labels(state);
-				long[] node = new long[labels];
+		// letters of the word in ascending order and the template letters they stand for
+		private final char[] letters;
+		private final char[] templateLetters;
 
-				if (template.accepts(state)) {
-					acceptCount++;
-				}
+		// letters of the word by template letter index and their position in letters
+		private final char[] word;
+		private final int[] ranks;
 
-				for (int k = 0; k < labels; k++) {
-					char oldChar = template.label(state, k);
-					int newCharIdx = Arrays.binarySearch(oldLabels, oldChar);
-					char newChar = newLabels[newCharIdx];
-					node[k] = combineInts(newChar, k);
-				}
-				Arrays.sort(node);
-				// then re-rename contents of array.
-				for (int k = 0; k < labels; k++) {
-					char newChar = decombineInt1(node[k]);
-					int index = decombineInt2(node[k]);
-					node[k] = combineInts(newChar, template.target(state, index));
-				}
+		// renamed edges of the state read last, replaced as a whole so readers never see a half written one
+		private Edges edges = new Edges(-1, new char[0], new int[0]);
 
-				transitions[state] = node;
+		IsomorphicIntDfa(SimpleIntDfa template, char[] word) {
+			this.template = template;
+			this.word = word;
+			final int length = word.length;
+			final long[] pairs = new long[length];
+			for (int i = 0; i < length; i++) {
+				pairs[i] = (long) word[i] << 16 | templateLetter(i);
 			}
-
-			this.acceptors = new int[acceptCount];
-			for(int i = 0, j = 0; i < transitions.length; i++) {
-				if (template.accepts(i)) {
-					acceptors[j++] = i;
-				}
+			Arrays.sort(pairs);
+			this.letters = new char[length];
+			this.templateLetters = new char[length];
+			this.ranks = new int[length];
+			for (int i = 0; i < length; i++) {
+				letters[i] = (char) (pairs[i] >>> 16);
+				templateLetters[i] = (char) pairs[i];
+				ranks[templateLetters[i] - 'a'] = i;
 			}
 		}
 
+		private static char templateLetter(int index) {
+			return (char) ('a' + index);
+		}
+
+		// letter of the word for a template label
+		private char rename(char templateLabel) {
+			return (templateLabel == ANY) ? ANY : word[templateLabel - 'a'];
+		}
+
+		// template letter for c or ANY when c is not in the word
+		private char translate(char c) {
+			final int idx = Arrays.binarySearch(letters, c);
+			return (idx < 0) ? ANY : templateLetters[idx];
+		}
+
 		@Override
 		public int size() {
-			return transitions.length;
+			return template.size();
+		}
+
+		@Override
+		public int step(int source, char c) {
+			if (c == ANY) return template.step(source, ANY);
+			final char t = translate(c);
+			return (t == ANY) ? -1 : template.step(source, t);
+		}
+
+		@Override
+		public int parse(CharSequence input) {
+			int state = START;
+			for (int i = 0, len = input.length(); i < len; i++) {
+				final char t = translate(input.charAt(i));
+				int next = template.step(state, t);
+				if (next == -1 && t != ANY) next = template.step(state, ANY);
+				if (next == -1) return -1;
+				state = next;
+			}
+			return state;
 		}
 
 		@Override
 		public char label(int state, int n) {
-			assert state > -1;
-			assert n > -1;
-			return decombineInt1(transitions[state][n]);
+			return edges(state).labels[n];
 		}
 
 		@Override
 		public int target(int state, int n) {
-			assert state > -1;
-			assert n > -1;
-			return decombineInt2(transitions[state][n]);
+			return edges(state).targets[n];
 		}
 
-		@Override
-		public int step(int source, char c) {
-			long[] array = transitions[source];
-			// TODO: better scan!
-			for (long value : array) {
-				if (decombineInt1(value) == c) {
-					return decombineInt2(value);
-				}
+		// renamed labels are not sorted any more, so the edges of a state are sorted by the rank of their letter
+		private Edges edges(int state) {
+			assert state > -1;
+			final Edges known = edges;
+			if (known.state == state) return known;
+
+			final int max = template.labels(state);
+			final long[] order = new long[max];
+			for (int i = 0; i < max; i++) {
+				final char t = template.label(state, i);
+				final long rank = (t == ANY) ? 0 : ranks[t - 'a'] + 1;
+				order[i] = rank << 32 | i;
+			}
+			Arrays.sort(order);
+			final char[] labels = new char[max];
+			final int[] targets = new int[max];
+			for (int i = 0; i < max; i++) {
+				final int idx = (int) order[i];
+				labels[i] = rename(template.label(state, idx));
+				targets[i] = template.target(state, idx);
 			}
-			return -1;
+			final Edges result = new Edges(state, labels, targets);
+			edges = result;
+			return result;
 		}
 
 		@Override
 		public int labels(int state) {
-			return transitions[state].length;
+			return template.labels(state);
 		}
 
 		@Override
 		public boolean accepts(int state) {
-			return Arrays.binarySearch(acceptors, state) >= 0;
+			return template.accepts(state);
+		}
+
+		private static final class Edges {
+			final int state;
+			final char[] labels;
+			final int[] targets;
+
+			Edges(int state, char[] labels, int[] targets) {
+				this.state = state;
+				this.labels = labels;
+				this.targets = targets;
+			}
 		}
 	}
 }
@@ -0,0 +1,240 @@
+package dev.erdos.automata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable Deterministic Finite Automaton read directly from a binary buffer, usually a memory mapped file.
+ *
+ * Loading does not copy or check the edges so it takes constant time, and processes mapping the same file share
+ * the page cache. Layout of version 1, all numbers are little endian:
+ *
+ * <pre>
+ * int    magic (MAGIC)
+ * int    version (VERSION)
+ * int    number of states (n)
+ * int    number of edges (m)
+ * long[] accepting states bitset, (n + 63) / 64 words
+ * int[]  offsets, n + 1 items: edges of state i are at offsets[i] ..&lt; offsets[i + 1]
+ * int[]  targets, m items
+ * char[] labels, m items, sorted for each state (so the '*' edge comes first)
+ * </pre>
+ *
+ * Thread safe.
+ */
+public final class MappedIntDfa implements SimpleIntDfa {
+
+	public static final int MAGIC = 0x45444641;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	private final ByteBuffer buffer;
+	private final int size;
+	private final int offsets;
+	private final int targets;
+	private final int labels;
+
+	private MappedIntDfa(ByteBuffer buffer, int size, int offsets, int targets, int labels) {
+		this.buffer = buffer;
+		this.size = size;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.labels = labels;
+	}
+
+	/**
+	 * Maps a file written by write().
+	 *
+	 * @throws IllegalArgumentException when the file is not in the supported format
+	 */
+	public static MappedIntDfa load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("File is too large: " + file);
+			}
+			// mapping stays valid after the channel is closed
+			return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Reads automaton from the remaining bytes of buffer. The buffer is not copied and must not change later.
+	 *
+	 * @throws IllegalArgumentException when the buffer is not in the supported format
+	 */
+	public static MappedIntDfa of(ByteBuffer buffer) {
+		final ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not an automaton file");
+		}
+		if (data.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("Unsupported version: " + data.getInt(4));
+		}
+
+		final int size = data.getInt(8);
+		final int edges = data.getInt(12);
+		if (size < 1 || edges < 0) {
+			throw new IllegalArgumentException("Invalid size: " + size + " states, " + edges + " edges");
+		}
+
+		final long offsets = HEADER_SIZE + 8L * ((size + 63L) >>> 6);
+		final long targets = offsets + 4L * (size + 1L);
+		final long labels = targets + 4L * edges;
+		final long end = labels + 2L * edges;
+		if (end != data.capacity()) {
+			throw new IllegalArgumentException("Invalid length: " + data.capacity() + " bytes instead of " + end);
+		}
+		return new MappedIntDfa(data, size, (int) offsets, (int) targets, (int) labels);
+	}
+
+	/**
+	 * Writes automaton to a file, replacing its contents.
+	 */
+	public static void write(SimpleIntDfa dfa, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(dfa, channel);
+		}
+	}
+
+	/**
+	 * Writes automaton to the current position of a channel.
+	 */
+	public static void write(SimpleIntDfa dfa, FileChannel channel) throws IOException {
+		final CompactIntDfa compact = dfa.freeze();
+		final int size = compact.size();
+		int edges = 0;
+		for (int i = 0; i < size; i++) {
+			edges += compact.labels(i);
+		}
+
+		final ByteBuffer out = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		out.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(edges);
+
+		for (int word = 0; word < (size + 63) >>> 6; word++) {
+			long bits = 0;
+			for (int i = word << 6, max = Math.min(size, i + 64); i < max; i++) {
+				if (compact.accepts(i)) bits |= 1L << i;
+			}
+			flushIfFull(channel, out, 8);
+			out.putLong(bits);
+		}
+
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			flushIfFull(channel, out, 4);
+			out.putInt(offset);
+			offset += compact.labels(i);
+		}
+		flushIfFull(channel, out, 4);
+		out.putInt(offset);
+
+		for (int i = 0; i < size; i++) {
+			for (int n = 0, max = compact.labels(i); n < max; n++) {
+				flushIfFull(channel, out, 4);
+				out.putInt(compact.target(i, n));
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			for (int n = 0, max = compact.labels(i); n < max; n++) {
+				flushIfFull(channel, out, 2);
+				out.putChar(compact.label(i, n));
+			}
+		}
+
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+	}
+
+	private static void flushIfFull(FileChannel channel, ByteBuffer out, int needed) throws IOException {
+		if (out.remaining() < needed) {
+			out.flip();
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+			out.clear();
+		}
+	}
+
+	private int offset(int state) {
+		return buffer.getInt(offsets + 4 * state);
+	}
+
+	private char labelAt(int edge) {
+		return buffer.getChar(labels + 2 * edge);
+	}
+
+	private int targetAt(int edge) {
+		return buffer.getInt(targets + 4 * edge);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int step(int state, char c) {
+		final int idx = search(offset(state), offset(state + 1), c);
+		return idx < 0 ? -1 : targetAt(idx);
+	}
+
+	@Override
+	public char label(int state, int n) {
+		assert n < labels(state);
+		return labelAt(offset(state) + n);
+	}
+
+	@Override
+	public int target(int state, int n) {
+		assert n < labels(state);
+		return targetAt(offset(state) + n);
+	}
+
+	@Override
+	public int labels(int state) {
+		return offset(state + 1) - offset(state);
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && (buffer.getLong(HEADER_SIZE + 8 * (state >>> 6)) & (1L << state)) != 0;
+	}
+
+	@Override
+	public int parse(CharSequence word) {
+		int state = START;
+		for (int i = 0, len = word.length(); i < len; i++) {
+			final int from = offset(state);
+			final int to = offset(state + 1);
+			int idx = search(from, to, word.charAt(i));
+			if (idx < 0) {
+				// '*' edge is always the first one
+				if (from < to && labelAt(from) == ANY) idx = from;
+				else return -1;
+			}
+			state = targetAt(idx);
+		}
+		return state;
+	}
+
+	// index of edge with label c in range or -1
+	private int search(int from, int to, char c) {
+		int lo = from;
+		int hi = to - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final char label = labelAt(mid);
+			if (label < c) lo = mid + 1;
+			else if (label > c) hi = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+}
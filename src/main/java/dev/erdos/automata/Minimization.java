@@ -0,0 +1,297 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+import static dev.erdos.automata.SimpleIntDfa.START;
+
+/**
+ * Hopcroft's partition refinement algorithm.
+ *
+ * The automaton is completed with a sink state and '*' is treated as one more letter standing for all characters
+ * without an explicit edge. Accepting states are only merged when they have the same set of labels.
+ */
+final class Minimization<T> {
+
+	private final SimpleIntDfa dfa;
+
+	// explicit labels in ascending order, letter index alphabet.length stands for '*'
+	private final char[] alphabet;
+	private final int letters;
+
+	// number of states including the sink
+	private final int n;
+	private final int sink;
+
+	// delta[letter * n + state]
+	private final int[] delta;
+
+	// predecessors of state s on letter a are predecessors[predecessorOffsets[a * n + s] ..< predecessorOffsets[a * n + s + 1]]
+	private final int[] predecessorOffsets;
+	private final int[] predecessors;
+
+	// refinable partition: elements of block b are elements[first[b] ..< end[b]], marked ones are before mid[b]
+	private final int[] elements;
+	private final int[] location;
+	private final int[] blockOf;
+	private final int[] first;
+	private final int[] end;
+	private final int[] mid;
+	private int blocks;
+
+	private final int[] worklist;
+	private final boolean[] inWorklist;
+	private int worklistSize;
+
+	Minimization(SimpleIntDfa dfa) {
+		this.dfa = dfa;
+		this.n = IntDfaOperations.explore(dfa) + 1;
+		this.sink = n - 1;
+		this.alphabet = alphabet(dfa);
+		this.letters = alphabet.length + 1;
+
+		this.delta = new int[letters * n];
+		for (int state = 0; state < sink; state++) {
+			int any = dfa.step(state, ANY);
+			if (any == -1) any = sink;
+			for (int a = 0; a < alphabet.length; a++) {
+				int target = dfa.step(state, alphabet[a]);
+				delta[a * n + state] = (target == -1) ? any : target;
+			}
+			delta[alphabet.length * n + state] = any;
+		}
+		for (int a = 0; a < letters; a++) {
+			delta[a * n + sink] = sink;
+		}
+
+		this.predecessorOffsets = new int[delta.length + 1];
+		this.predecessors = new int[delta.length];
+		for (int i = 0; i < delta.length; i++) {
+			predecessorOffsets[(i / n) * n + delta[i] + 1]++;
+		}
+		for (int i = 0; i < delta.length; i++) {
+			predecessorOffsets[i + 1] += predecessorOffsets[i];
+		}
+		int[] fill = Arrays.copyOf(predecessorOffsets, delta.length);
+		for (int i = 0; i < delta.length; i++) {
+			predecessors[fill[(i / n) * n + delta[i]]++] = i % n;
+		}
+
+		this.elements = new int[n];
+		this.location = new int[n];
+		this.blockOf = new int[n];
+		this.first = new int[n];
+		this.end = new int[n];
+		this.mid = new int[n];
+		this.worklist = new int[n];
+		this.inWorklist = new boolean[n];
+
+		initialPartition();
+		refine();
+	}
+
+	private static char[] alphabet(SimpleIntDfa dfa) {
+		BitSet labels = new BitSet();
+		for (int state = 0, size = dfa.size(); state < size; state++) {
+			for (int i = 0, max = dfa.labels(state); i < max; i++) {
+				labels.set(dfa.label(state, i));
+			}
+		}
+		labels.clear(ANY);
+
+		char[] result = new char[labels.cardinality()];
+		for (int c = labels.nextSetBit(0), i = 0; c >= 0; c = labels.nextSetBit(c + 1)) {
+			result[i++] = (char) c;
+		}
+		return result;
+	}
+
+	private List<T> values(int state) {
+		return IntDfaOperations.values(dfa, state);
+	}
+
+	// rejecting states form one block, accepting states are grouped by their set of labels
+	private void initialPartition() {
+		Map<Object, Integer> keys = new HashMap<>();
+		for (int state = 0; state < n; state++) {
+			Object key = (state != sink && dfa.accepts(state)) ? new HashSet<>(values(state)) : null;
+			Integer block = keys.get(key);
+			if (block == null) {
+				block = blocks++;
+				keys.put(key, block);
+			}
+			blockOf[state] = block;
+			end[block]++;
+		}
+
+		for (int b = 1; b < blocks; b++) {
+			end[b] += end[b - 1];
+		}
+		for (int b = 0; b < blocks; b++) {
+			first[b] = (b == 0) ? 0 : end[b - 1];
+			mid[b] = first[b];
+		}
+
+		int[] fill = Arrays.copyOf(first, blocks);
+		for (int state = 0; state < n; state++) {
+			int idx = fill[blockOf[state]]++;
+			elements[idx] = state;
+			location[state] = idx;
+		}
+
+		for (int b = 0; b < blocks; b++) {
+			addToWorklist(b);
+		}
+	}
+
+	private void addToWorklist(int block) {
+		if (!inWorklist[block]) {
+			inWorklist[block] = true;
+			worklist[worklistSize++] = block;
+		}
+	}
+
+	private void refine() {
+		final int[] splitter = new int[n];
+		final int[] touched = new int[n];
+
+		while (worklistSize > 0) {
+			final int block = worklist[--worklistSize];
+			inWorklist[block] = false;
+
+			final int length = end[block] - first[block];
+			System.arraycopy(elements, first[block], splitter, 0, length);
+
+			for (int a = 0; a < letters; a++) {
+				int touchedCount = 0;
+				for (int i = 0; i < length; i++) {
+					final int key = a * n + splitter[i];
+					for (int j = predecessorOffsets[key], limit = predecessorOffsets[key + 1]; j < limit; j++) {
+						final int state = predecessors[j];
+						final int b = blockOf[state];
+						if (location[state] >= mid[b]) {
+							if (mid[b] == first[b]) {
+								touched[touchedCount++] = b;
+							}
+							mark(state, b);
+						}
+					}
+				}
+
+				for (int i = 0; i < touchedCount; i++) {
+					split(touched[i]);
+				}
+			}
+		}
+	}
+
+	private void mark(int state, int block) {
+		final int idx = location[state];
+		final int other = elements[mid[block]];
+		elements[idx] = other;
+		location[other] = idx;
+		elements[mid[block]] = state;
+		location[state] = mid[block];
+		mid[block]++;
+	}
+
+	// the smaller part of the block gets the new id so that it is enough to put the new block on the worklist.
+	private void split(int block) {
+		if (mid[block] == end[block]) {
+			mid[block] = first[block];
+			return;
+		}
+
+		final int newBlock = blocks++;
+		if (mid[block] - first[block] <= end[block] - mid[block]) {
+			first[newBlock] = first[block];
+			end[newBlock] = mid[block];
+			first[block] = mid[block];
+		} else {
+			first[newBlock] = mid[block];
+			end[newBlock] = end[block];
+			end[block] = mid[block];
+		}
+		mid[block] = first[block];
+		mid[newBlock] = first[newBlock];
+
+		for (int i = first[newBlock]; i < end[newBlock]; i++) {
+			blockOf[elements[i]] = newBlock;
+		}
+		addToWorklist(newBlock);
+	}
+
+	/**
+	 * Builds the minimal automaton. States are numbered in breadth first order from the start state.
+	 */
+	MutableArrayDFA<T> result() {
+		final MutableArrayDFA<T> result = new MutableArrayDFA<>();
+		final int deadBlock = blockOf[sink];
+		final int startBlock = blockOf[START];
+
+		if (startBlock == deadBlock) {
+			return result;
+		}
+
+		final int[] blockToState = new int[blocks];
+		Arrays.fill(blockToState, -1);
+		final int[] queue = new int[blocks];
+		int head = 0;
+		int tail = 0;
+		int deadState = -1;
+
+		blockToState[startBlock] = START;
+		queue[tail++] = startBlock;
+
+		while (head < tail) {
+			final int block = queue[head++];
+			final int state = blockToState[block];
+			final int representative = elements[first[block]];
+
+			if (dfa.accepts(representative)) {
+				List<T> values = values(representative);
+				if (values.isEmpty()) {
+					result.accept(state);
+				}
+				for (T value : new LinkedHashSet<>(values)) {
+					result.accept(state, value);
+				}
+			}
+
+			final int anyBlock = blockOf[delta[alphabet.length * n + representative]];
+			if (anyBlock != deadBlock) {
+				if (blockToState[anyBlock] == -1) {
+					blockToState[anyBlock] = result.newState();
+					queue[tail++] = anyBlock;
+				}
+				result.connect(state, ANY, blockToState[anyBlock]);
+			}
+
+			for (int a = 0; a < alphabet.length; a++) {
+				final int targetBlock = blockOf[delta[a * n + representative]];
+				if (targetBlock == anyBlock) continue; // if same as for * then we can skip
+
+				final int target;
+				if (targetBlock == deadBlock) {
+					if (deadState == -1) deadState = result.newState();
+					target = deadState;
+				} else {
+					if (blockToState[targetBlock] == -1) {
+						blockToState[targetBlock] = result.newState();
+						queue[tail++] = targetBlock;
+					}
+					target = blockToState[targetBlock];
+				}
+				result.connect(state, alphabet[a], target);
+			}
+		}
+
+		return result;
+	}
+}
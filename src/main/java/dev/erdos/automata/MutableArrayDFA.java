@@ -18,7 +18,7 @@ public final class MutableArrayDFA<T> implements WritableIntDfa {
 	private final StateLabelMap<T> stateLabels = new StateLabelMap<>();
 
 	public MutableArrayDFA(SimpleIntDfa parent) {
-		size = parent.size();
+		size = IntDfaOperations.explore(parent);
 		for (int i = 0; i < size; i++) {
 			long[] ary = new long[parent.labels(i)];
 			for (int j = 0; j < ary.length; j++) {
@@ -27,6 +27,9 @@ public final class MutableArrayDFA<T> implements WritableIntDfa {
 			transitions.add(ary);
 			if (parent.accepts(i)) {
 				stateLabels.put(i, null);
+				for (T value : IntDfaOperations.<T>values(parent, i)) {
+					stateLabels.put(i, value);
+				}
 			}
 		}
 	}
@@ -118,11 +121,101 @@ public final class MutableArrayDFA<T> implements WritableIntDfa {
 		stateLabels.put(state, null);
 	}
 
+	/**
+	 * Mark state as accepting state with a label.
+	 */
+	public void accept(int state, T value) {
+		stateLabels.put(state, value);
+	}
+
+	/**
+	 * Labels of an accepting state.
+	 */
+	public List<T> values(int state) {
+		return stateLabels.values(state);
+	}
+
 	@Override
 	public void reject(int state) {
 		stateLabels.remove(state);
 	}
 
+	/**
+	 * Removes states that are not reachable from the start state or can not reach an accepting state, and numbers
+	 * the remaining states densely keeping their order. Letters that led to a removed state while '*' leads to a
+	 * kept one are redirected to a single new sink state, so the accepted words do not change.
+	 */
+	public MutableArrayDFA<T> trim() {
+		final StateAnalysis analysis = StateAnalysis.of(this);
+
+		// reachable and live states get new ids, START is always kept
+		final int[] ids = new int[size];
+		Arrays.fill(ids, -1);
+		ids[START] = START;
+		final int[] stack = new int[size];
+		int top = 0;
+		stack[top++] = START;
+		while (top > 0) {
+			final long[] edges = transitions.get(stack[--top]);
+			for (long edge : edges) {
+				final int target = decombineInt2(edge);
+				if (ids[target] == -1 && analysis.canReachAccept(target)) {
+					ids[target] = 0;
+					stack[top++] = target;
+				}
+			}
+		}
+		int count = 0;
+		for (int state = 0; state < size; state++) {
+			if (ids[state] != -1) ids[state] = count++;
+		}
+
+		final List<long[]> kept = new ArrayList<>(count);
+		final List<List<T>> values = new ArrayList<>(count);
+		final long[] accepting = new long[(count + 63) >>> 6];
+		int sink = -1;
+		for (int state = 0; state < size; state++) {
+			if (ids[state] == -1) continue;
+			final long[] edges = transitions.get(state);
+			final int any = step(state, ANY);
+			final boolean liveAny = any != -1 && ids[any] != -1;
+			final long[] trimmed = new long[edges.length];
+			int edgeCount = 0;
+			for (long edge : edges) {
+				int target = ids[decombineInt2(edge)];
+				if (target == -1) {
+					if (!liveAny) continue; // same as having no edge
+					if (sink == -1) sink = count;
+					target = sink;
+				}
+				trimmed[edgeCount++] = combineInts(decombineInt1(edge), target);
+			}
+			kept.add(Arrays.copyOf(trimmed, edgeCount));
+			if (accepts(state)) {
+				accepting[ids[state] >>> 6] |= 1L << ids[state];
+			}
+			values.add(values(state));
+		}
+
+		transitions.clear();
+		transitions.addAll(kept);
+		size = count;
+		if (sink != -1) {
+			newState();
+		}
+		// lists of values stay valid after clear()
+		stateLabels.clear();
+		for (int state = 0; state < count; state++) {
+			if ((accepting[state >>> 6] & (1L << state)) != 0) {
+				stateLabels.put(state, null);
+				for (T value : values.get(state)) {
+					stateLabels.put(state, value);
+				}
+			}
+		}
+		return this;
+	}
+
 	private static long combineInts(char a, int b) {
 		return (long) a << 32 | b & 0xFFFFFFFFL;
 	}
@@ -0,0 +1,185 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Deterministic Finite Automaton with range labeled edges. Adjacent ranges of a state with the same target are
+ * merged when connected.
+ */
+public final class MutableRangeDFA implements RangeIntDfa {
+
+	private int size;
+
+	// ranges of each state sorted by their first character
+	private final List<long[]> transitions = new ArrayList<>();
+	private long[] accepting = new long[1];
+
+	public MutableRangeDFA() {
+		newState();
+	}
+
+	/**
+	 * Copies an automaton: explicit edges become single character ranges and the '*' edge covers the rest. Edges with
+	 * duplicate labels are dropped, the first one is kept.
+	 */
+	public static MutableRangeDFA of(SimpleIntDfa dfa) {
+		IntDfaOperations.explore(dfa);
+		final MutableRangeDFA result = new MutableRangeDFA();
+		for (int state = 1; state < dfa.size(); state++) {
+			result.newState();
+		}
+		for (int state = 0; state < dfa.size(); state++) {
+			final int any = dfa.step(state, SimpleIntDfa.ANY);
+			int next = Character.MIN_VALUE; // first character not covered yet
+			for (int n = 0, max = dfa.labels(state); n < max; n++) {
+				final char c = dfa.label(state, n);
+				// the first of edges with the same label is kept, like in CompactIntDfa.freeze()
+				if (c == SimpleIntDfa.ANY || n > 0 && c == dfa.label(state, n - 1)) continue;
+				if (any != -1 && next < c) result.connect(state, (char) next, (char) (c - 1), any);
+				result.connect(state, c, c, dfa.target(state, n));
+				next = c + 1;
+			}
+			if (any != -1 && next <= Character.MAX_VALUE) result.connect(state, (char) next, Character.MAX_VALUE, any);
+			if (dfa.accepts(state)) result.accept(state);
+		}
+		return result;
+	}
+
+	public int newState() {
+		transitions.add(new long[0]);
+		return size++;
+	}
+
+	/**
+	 * Connects the characters from .. to (inclusive) of source to target.
+	 *
+	 * @throws IllegalArgumentException when the range is empty or overlaps a range of source
+	 */
+	public MutableRangeDFA connect(int source, char from, char to, int target) {
+		assert source < size;
+		assert target < size;
+		if (from > to) {
+			throw new IllegalArgumentException("Empty range: " + (int) from + " > " + (int) to);
+		}
+
+		final long[] ranges = transitions.get(source);
+		final int idx = insertionPoint(ranges, from);
+		if (idx < ranges.length && from(ranges[idx]) <= to || idx > 0 && to(ranges[idx - 1]) >= from) {
+			throw new IllegalArgumentException("Range " + (int) from + ".." + (int) to + " overlaps an edge of state " + source);
+		}
+
+		final boolean left = idx > 0 && to(ranges[idx - 1]) + 1 == from && target(ranges[idx - 1]) == target;
+		final boolean right = idx < ranges.length && to + 1 == from(ranges[idx]) && target(ranges[idx]) == target;
+		final long[] result;
+		if (left && right) {
+			result = new long[ranges.length - 1];
+			System.arraycopy(ranges, 0, result, 0, idx - 1);
+			result[idx - 1] = range(from(ranges[idx - 1]), to(ranges[idx]), target);
+			System.arraycopy(ranges, idx + 1, result, idx, ranges.length - idx - 1);
+		} else if (left || right) {
+			result = ranges.clone();
+			final int merged = left ? idx - 1 : idx;
+			result[merged] = left ? range(from(ranges[merged]), to, target) : range(from, to(ranges[merged]), target);
+		} else {
+			result = new long[ranges.length + 1];
+			System.arraycopy(ranges, 0, result, 0, idx);
+			result[idx] = range(from, to, target);
+			System.arraycopy(ranges, idx, result, idx + 1, ranges.length - idx);
+		}
+		transitions.set(source, result);
+		return this;
+	}
+
+	/**
+	 * Connects all characters of a class to target, eg. Character::isLetter. Characters with an edge already are
+	 * not allowed in the class.
+	 */
+	public MutableRangeDFA connect(int source, IntPredicate chars, int target) {
+		int from = -1;
+		for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE + 1; c++) {
+			final boolean member = c <= Character.MAX_VALUE && chars.test(c);
+			if (member && from == -1) {
+				from = c;
+			} else if (!member && from != -1) {
+				connect(source, (char) from, (char) (c - 1), target);
+				from = -1;
+			}
+		}
+		return this;
+	}
+
+	public void accept(int state) {
+		if (state >>> 6 >= accepting.length) {
+			accepting = Arrays.copyOf(accepting, Math.max(accepting.length * 2, (state >>> 6) + 1));
+		}
+		accepting[state >>> 6] |= 1L << state;
+	}
+
+	public void reject(int state) {
+		if (state >>> 6 < accepting.length) {
+			accepting[state >>> 6] &= ~(1L << state);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int ranges(int state) {
+		return transitions.get(state).length;
+	}
+
+	@Override
+	public char from(int state, int n) {
+		return from(transitions.get(state)[n]);
+	}
+
+	@Override
+	public char to(int state, int n) {
+		return to(transitions.get(state)[n]);
+	}
+
+	@Override
+	public int target(int state, int n) {
+		return target(transitions.get(state)[n]);
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && state >>> 6 < accepting.length && (accepting[state >>> 6] & (1L << state)) != 0;
+	}
+
+	// index of the first range starting at or after c. ranges are compared by their first character, the packed
+	// longs are not in order because the sign bit is set for characters from U+8000.
+	private static int insertionPoint(long[] ranges, char c) {
+		int lo = 0;
+		int hi = ranges.length;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (from(ranges[mid]) < c) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	private static long range(char from, char to, int target) {
+		return (long) from << 48 | (long) to << 32 | target & 0xFFFFFFFFL;
+	}
+
+	private static char from(long range) {
+		return (char) (range >>> 48);
+	}
+
+	private static char to(long range) {
+		return (char) (range >>> 32);
+	}
+
+	private static int target(long range) {
+		return (int) range;
+	}
+}
@@ -1,23 +1,13 @@
 package dev.erdos.automata;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Stream;
 
 import static dev.erdos.automata.SimpleIntDfa.ANY;
-import static java.util.Collections.emptySet;
-import static java.util.Collections.singleton;
-import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toSet;
 
 /**
  * Nondeterministic Finite Automata
@@ -31,22 +21,40 @@ public final class NDFA<T> implements Predicate<CharSequence> {
 	private final Set<Character> alphabet = new HashSet<>();
 	final StateLabelMap<T> stateLabels = new StateLabelMap<>();
 
+	// compiled form for simulation, dropped on every change of the transitions.
+	private BitParallelNfa bitParallel;
+
 	{
 		newState();
 	}
 
 	// increases nr of states, returns new state index.
 	int newState() {
+		bitParallel = null;
 		transitionsList.add(new ArrayList<>(1));
 		return transitionsList.size() - 1;
 	}
 
 	void addTransition(char c, int source, int destination) {
+		bitParallel = null;
 		if (c != EPSILON && c != ANY) alphabet.add(c);
 		transitionsList.get(source).add(new Transition(source, c, destination));
 		//		transitions.add(new Transition(source, c, destination));
 	}
 
+	// number of outgoing transitions from state
+	int transitions(int state) {
+		return transitionsList.get(state).size();
+	}
+
+	char transitionLabel(int state, int n) {
+		return transitionsList.get(state).get(n).c;
+	}
+
+	int transitionTarget(int state, int n) {
+		return transitionsList.get(state).get(n).target;
+	}
+
 	void addDefaultTransition(int source, int destination) {
 		addTransition(ANY, source, destination);
 	}
@@ -100,44 +108,25 @@ public final class NDFA<T> implements Predicate<CharSequence> {
 		return automaton;
 	}
 
+	// simulates the automaton on a bitset of states without building the dfa.
 	@Override
 	public boolean test(CharSequence word) {
-		Set<Integer> states = startStateSet();
-		for (int i = 0; i < word.length(); i++) {
-			char c = word.charAt(i);
-
-			states = states.stream().flatMap(state -> transitions(state, c).stream()).collect(toSet());
-			if (states.isEmpty()) return false;
-		}
-		return states.stream().flatMap(s -> transitiveClosure(s).stream()).anyMatch(stateLabels::hasKey);
+		return bitParallel().test(word);
 	}
 
-	// TODO: speed it up!!!!
-	private Stream<Transition> transitionsFromState(int state) {
-		return transitionsList.get(state).stream();
-	}
-
-	// TODO: speed it up
-	private Set<Integer> transitiveClosure(int state) {
-		Set<Integer> closure = new HashSet<>();
-		Set<Integer> buffer = new HashSet<>();
-		breadthFirstTraversal(state, t -> {
-			if (closure.add(t)) {
-				buffer.clear();
-				// TODO: make this faster?
-				transitionsFromState(t).filter(x -> x.c == EPSILON).map(x -> x.target).forEach(buffer::add);
-				return buffer;
-			} else {
-				return emptySet();
-			}
-		});
-
-		return closure;
+	BitParallelNfa bitParallel() {
+		BitParallelNfa simulation = bitParallel;
+		if (simulation == null) {
+			simulation = bitParallel = new BitParallelNfa(this);
+		}
+		return simulation;
 	}
 
-	// start set and its transitive closure
-	Set<Integer> startStateSet() {
-		return transitiveClosure(START_STATE);
+	/**
+	 * Deterministic automaton that creates its states on first use and keeps at most memoryBudget bytes of them.
+	 */
+	public LazyIntDfa lazyDfa(long memoryBudget) {
+		return new LazyIntDfa(bitParallel(), memoryBudget);
 	}
 
 	public Set<Character> alphabet() {
@@ -165,116 +154,79 @@ public final class NDFA<T> implements Predicate<CharSequence> {
 		}
 	}
 
-	private static <T> void breadthFirstTraversal(T root, Function<T, Collection<T>> step) {
-		Queue<T> q = new ArrayDeque<>(singleton(root));
-		while (!q.isEmpty()) {
-			q.addAll(step.apply(q.remove()));
-		}
-	}
-
-	public WritableIntDfa dfa() {
-		Set<Character> characters = this.alphabet();
-
-		Set<Integer> start = this.startStateSet();
-
-		WritableIntDfa result = new MutableArrayDFA<>();
-
-		Map<Set<Integer>, Integer> statesToIndex = new HashMap<>();
-		statesToIndex.put(start, SimpleIntDfa.START);
-
-		List<Set<Integer>> traversalOutputBuffer = new ArrayList<>();
-
-		Graph.breadthFirstTraversal(start, states -> {
-			assert !states.isEmpty();
-			int sourceIndex = requireNonNull(statesToIndex.get(states));
-			traversalOutputBuffer.clear();
-
-			// TODO: copy state labels
-			for (int state : states) {
-				if (this.stateLabels.hasKey(state)) {
-					result.accept(sourceIndex);
+	/**
+	 * Powerset construction on the bitsets of the simulation. States are numbered in breadth first order.
+	 * Accepting states get the labels of all accepting NDFA states in their set.
+	 */
+	public MutableArrayDFA<T> dfa() {
+		return dfa(new MutableArrayDFA<>());
+	}
+
+	/**
+	 * Powerset construction into an automaton that has only its start state. Labels are copied when the target is
+	 * a MutableArrayDFA.
+	 */
+	@SuppressWarnings("unchecked")
+	public <W extends WritableIntDfa> W dfa(W result) {
+		assert result.size() == 1 && result.labels(START_STATE) == 0;
+		final BitParallelNfa nfa = bitParallel();
+		final int words = nfa.words();
+		final StateSets sets = new StateSets(words, 16);
+		final long[] anyTarget = new long[words];
+		final long[] target = new long[words];
+
+		final MutableArrayDFA<T> labeled = (result instanceof MutableArrayDFA) ? (MutableArrayDFA<T>) result : null;
+
+		nfa.start(target, 0);
+		sets.add(target, 0, sets.hash(target, 0));
+
+		// sets are added in discovery order, so ids of the unprocessed ones form the queue
+		for (int state = 0; state < sets.size(); state++) {
+			if (nfa.accepts(sets.sets(), state * words)) {
+				result.accept(state);
+				if (labeled != null) {
+					copyLabels(sets.sets(), state * words, labeled, state);
 				}
 			}
 
 			// if there is arrow for *
-			Set<Integer> antTargetStates = this.step(ANY, states);
-			if (!antTargetStates.isEmpty()) {
-				int anyTarget = statesToIndex.computeIfAbsent(antTargetStates, __ -> result.newState());
-				result.connect(sourceIndex, ANY, anyTarget);
-				traversalOutputBuffer.add(antTargetStates);
+			final boolean hasAny = nfa.step(sets.sets(), state * words, 0, anyTarget, 0);
+			if (hasAny) {
+				result.connect(state, ANY, intern(sets, anyTarget, result));
 			}
 
-			for (char c : characters) {
-				Set<Integer> target = this.step(c, states);
-				if (target.equals(antTargetStates)) continue; // if same as for * then we can skip
+			for (int letter = 1; letter < nfa.letters(); letter++) {
+				if (!nfa.step(sets.sets(), state * words, letter, target, 0)) continue;
+				if (hasAny && Arrays.equals(target, anyTarget)) continue; // if same as for * then we can skip
 
-				assert !target.isEmpty();
-
-				int targetIndex = statesToIndex.getOrDefault(target, -1);
-				if (targetIndex == -1) {
-					targetIndex = result.newState();
-					statesToIndex.put(target, targetIndex);
-				}
-				result.connect(sourceIndex, c, targetIndex);
-				traversalOutputBuffer.add(target);
+				result.connect(state, nfa.letterChar(letter), intern(sets, target, result));
 			}
-			return traversalOutputBuffer;
-		});
+		}
 
 		return result;
 	}
 
-
-	// set of all states accessible when reading character. follows transitive closure.
-	private Set<Integer> transitions(int sourceState, char c) {
-		/*
-		// same but slower:
-		return transitionsFromState(sourceState)
-				.filter(t -> t.c == c || t.c == ANY)
-				.map(t -> t.target)
-				.flatMap(t -> transitiveClosure(t).stream())
-				.collect(toSet());
-		*/
-		Set<Integer> result = new HashSet<>();
-		for (Transition transition : transitionsList.get(sourceState)) {
-			if (transition.c == c || transition.c == ANY) {
-				result.addAll(transitiveClosure(transition.target));
+	private void copyLabels(long[] set, int offset, MutableArrayDFA<T> result, int state) {
+		for (int w = 0; w < (size() + 63) >>> 6; w++) {
+			for (long bits = set[offset + w]; bits != 0; bits &= bits - 1) {
+				for (T value : stateLabels.values((w << 6) + Long.numberOfTrailingZeros(bits))) {
+					if (!result.values(state).contains(value)) {
+						result.accept(state, value);
+					}
+				}
 			}
 		}
-		return result;
 	}
 
-	Set<Integer> step(char c, Set<Integer> fromStates) {
-		// return fromStates.stream().flatMap(t -> transitions(t, c).stream()).collect(Collectors.toSet());
-
-		Set<Integer> result = new HashSet<>();
-		Set<Integer> buffer = new HashSet<>();
-		for (Integer t : fromStates) {
-			// TODO figure out transitions
-			for (Transition transition : transitionsList.get(t)) {
-				if (transition.c == c || transition.c == ANY) {
-
-					breadthFirstTraversal(transition.target, tt -> {
-						if (result.add(tt)) {
-							buffer.clear();
-
-							for (Transition x : transitionsList.get(tt)) {
-								if (x.c == EPSILON) {
-									buffer.add(x.target);
-								}
-							}
-
-							return buffer;
-						} else {
-							return emptySet();
-						}
-					});
-
-					result.addAll(transitiveClosure(transition.target));
-				}
-			}
+	// id of the set, creates new dfa state for new sets
+	private static int intern(StateSets sets, long[] set, WritableIntDfa result) {
+		final int hash = sets.hash(set, 0);
+		int id = sets.find(set, 0, hash);
+		if (id == -1) {
+			id = sets.add(set, 0, hash);
+			final int state = result.newState();
+			assert state == id;
 		}
-
-		return result;
+		return id;
 	}
 }
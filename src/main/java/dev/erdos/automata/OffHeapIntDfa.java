@@ -0,0 +1,258 @@
+package dev.erdos.automata;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Immutable Deterministic Finite Automaton stored outside of the heap in direct buffers.
+ *
+ * The layout is the same as of CompactIntDfa (offsets, labels, targets and an accepting bitset) but every array is
+ * split into direct buffers of at most 1 GB, so the garbage collector sees a few buffer objects no matter how many
+ * edges the automaton has. Build large automata with a DfaBuilder (one array for all edges) and copy them here.
+ *
+ * Thread safe. After close() every method throws IllegalStateException; readers already running keep working on
+ * the buffers they hold, and the memory is returned when the last of them is done and the buffers are collected.
+ */
+public final class OffHeapIntDfa implements SimpleIntDfa, AutoCloseable {
+
+	private static final int SEGMENT_BITS = 30;
+
+	private final int size;
+
+	// null when closed
+	private volatile Data data;
+
+	private OffHeapIntDfa(int size, Data data) {
+		this.size = size;
+		this.data = data;
+	}
+
+	/**
+	 * Copies an automaton to direct memory.
+	 *
+	 * @throws IllegalArgumentException when it has more than Integer.MAX_VALUE edges
+	 */
+	public static OffHeapIntDfa of(SimpleIntDfa dfa) {
+		return of(dfa, SEGMENT_BITS);
+	}
+
+	// segments of 1 << segmentBits bytes
+	static OffHeapIntDfa of(SimpleIntDfa dfa, int segmentBits) {
+		assert segmentBits >= 3 && segmentBits <= SEGMENT_BITS;
+		final int size = IntDfaOperations.explore(dfa);
+		long edges = 0;
+		int maxLabels = 0;
+		for (int state = 0; state < size; state++) {
+			final int n = dfa.labels(state);
+			edges += n;
+			maxLabels = Math.max(maxLabels, n);
+		}
+		if (edges > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many edges: " + edges);
+		}
+
+		final Segments offsets = new Segments(4L * (size + 1), segmentBits);
+		final Segments labels = new Segments(2L * edges, segmentBits);
+		final Segments targets = new Segments(4L * edges, segmentBits);
+		final Segments accepting = new Segments(8L * ((size + 63) >>> 6), segmentBits);
+
+		// edges sorted by label, duplicate labels are dropped like in CompactIntDfa.freeze()
+		final long[] buffer = new long[maxLabels];
+		int edge = 0;
+		long bits = 0;
+		for (int state = 0; state < size; state++) {
+			final int n = dfa.labels(state);
+			for (int i = 0; i < n; i++) {
+				buffer[i] = combineInts(dfa.label(state, i), dfa.target(state, i));
+			}
+			Arrays.sort(buffer, 0, n);
+
+			offsets.putInt(state, edge);
+			for (int i = 0; i < n; i++) {
+				final char c = decombineInt1(buffer[i]);
+				if (i > 0 && c == decombineInt1(buffer[i - 1])) continue;
+				labels.putChar(edge, c);
+				targets.putInt(edge, decombineInt2(buffer[i]));
+				edge++;
+			}
+			if (dfa.accepts(state)) {
+				bits |= 1L << state;
+			}
+			if ((state & 63) == 63 || state == size - 1) {
+				accepting.putLong(state >>> 6, bits);
+				bits = 0;
+			}
+		}
+		offsets.putInt(size, edge);
+		return new OffHeapIntDfa(size, new Data(offsets, labels, targets, accepting));
+	}
+
+	private Data data() {
+		final Data current = data;
+		if (current == null) {
+			throw new IllegalStateException("Automaton is closed");
+		}
+		return current;
+	}
+
+	/**
+	 * Detaches the buffers; memory is returned once running readers finish and the buffers are collected. Closing
+	 * more than once has no effect.
+	 */
+	@Override
+	public void close() {
+		data = null;
+	}
+
+	public boolean isClosed() {
+		return data == null;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int step(int state, char c) {
+		final Data d = data();
+		final int idx = d.search(d.offsets.getInt(state), d.offsets.getInt(state + 1), c);
+		return idx < 0 ? -1 : d.targets.getInt(idx);
+	}
+
+	@Override
+	public char label(int state, int n) {
+		final Data d = data();
+		assert n < d.offsets.getInt(state + 1) - d.offsets.getInt(state);
+		return d.labels.getChar(d.offsets.getInt(state) + n);
+	}
+
+	@Override
+	public int target(int state, int n) {
+		final Data d = data();
+		assert n < d.offsets.getInt(state + 1) - d.offsets.getInt(state);
+		return d.targets.getInt(d.offsets.getInt(state) + n);
+	}
+
+	@Override
+	public int labels(int state) {
+		final Data d = data();
+		return d.offsets.getInt(state + 1) - d.offsets.getInt(state);
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		final Data d = data();
+		return state >= 0 && (d.accepting.getLong(state >>> 6) & (1L << state)) != 0;
+	}
+
+	@Override
+	public int parse(CharSequence word) {
+		final Data d = data();
+		int state = START;
+		for (int i = 0, len = word.length(); i < len; i++) {
+			final int from = d.offsets.getInt(state);
+			final int to = d.offsets.getInt(state + 1);
+			int idx = d.search(from, to, word.charAt(i));
+			if (idx < 0) {
+				// '*' edge is always the first one
+				if (from < to && d.labels.getChar(from) == ANY) idx = from;
+				else return -1;
+			}
+			state = d.targets.getInt(idx);
+		}
+		return state;
+	}
+
+	private static long combineInts(char a, int b) {
+		return (long) a << 32 | b & 0xFFFFFFFFL;
+	}
+
+	private static char decombineInt1(long c) {
+		return (char) (c >> 32);
+	}
+
+	private static int decombineInt2(long c) {
+		return (int) c;
+	}
+
+	private static final class Data {
+		final Segments offsets;
+		final Segments labels;
+		final Segments targets;
+		final Segments accepting;
+
+		Data(Segments offsets, Segments labels, Segments targets, Segments accepting) {
+			this.offsets = offsets;
+			this.labels = labels;
+			this.targets = targets;
+			this.accepting = accepting;
+		}
+
+		// index of edge with label c in range or -1
+		int search(int from, int to, char c) {
+			int lo = from;
+			int hi = to - 1;
+			while (lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				final char label = labels.getChar(mid);
+				if (label < c) lo = mid + 1;
+				else if (label > c) hi = mid - 1;
+				else return mid;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Array of fixed size items in direct buffers. Items do not cross buffer borders because the buffer size is a
+	 * multiple of the item size. Only absolute get and put are used, so concurrent reads are safe.
+	 */
+	private static final class Segments {
+		private final ByteBuffer[] buffers;
+		private final int bits;
+		private final int mask;
+
+		Segments(long bytes, int bits) {
+			this.bits = bits;
+			this.mask = (1 << bits) - 1;
+			final int count = (int) ((bytes + mask) >>> bits);
+			this.buffers = new ByteBuffer[count];
+			for (int i = 0; i < count; i++) {
+				final long length = Math.min(1L << bits, bytes - ((long) i << bits));
+				buffers[i] = ByteBuffer.allocateDirect((int) length).order(ByteOrder.nativeOrder());
+			}
+		}
+
+		int getInt(long index) {
+			final long position = index << 2;
+			return buffers[(int) (position >>> bits)].getInt((int) position & mask);
+		}
+
+		void putInt(long index, int value) {
+			final long position = index << 2;
+			buffers[(int) (position >>> bits)].putInt((int) position & mask, value);
+		}
+
+		char getChar(long index) {
+			final long position = index << 1;
+			return buffers[(int) (position >>> bits)].getChar((int) position & mask);
+		}
+
+		void putChar(long index, char value) {
+			final long position = index << 1;
+			buffers[(int) (position >>> bits)].putChar((int) position & mask, value);
+		}
+
+		long getLong(long index) {
+			final long position = index << 3;
+			return buffers[(int) (position >>> bits)].getLong((int) position & mask);
+		}
+
+		void putLong(long index, long value) {
+			final long position = index << 3;
+			buffers[(int) (position >>> bits)].putLong((int) position & mask, value);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Matches batches of words against one automaton on a fork-join pool.
+ *
+ * The automaton is only read, so it must be safe to read from many threads. MutableArrayDFA and CompactIntDfa are
+ * once they are not modified any more, LazyIntDfa is not. Use dfa.freeze() for the fastest matching.
+ */
+public final class ParallelMatcher {
+
+	// words matched by one task. multiple of 64, so tasks write distinct words of the result bitset.
+	private static final int LEAF_SIZE = 4096;
+
+	private final SimpleIntDfa dfa;
+	private final ForkJoinPool pool;
+
+	public ParallelMatcher(SimpleIntDfa dfa) {
+		this(dfa, ForkJoinPool.commonPool());
+	}
+
+	public ParallelMatcher(SimpleIntDfa dfa, ForkJoinPool pool) {
+		this.dfa = dfa;
+		this.pool = pool;
+	}
+
+	/**
+	 * Bit i of the result is set iff words[i] is accepted.
+	 */
+	public BitSet test(CharSequence[] words) {
+		return test(Arrays.asList(words));
+	}
+
+	/**
+	 * Bit i of the result is set iff the ith word is accepted.
+	 */
+	public BitSet test(List<? extends CharSequence> words) {
+		final List<? extends CharSequence> list = randomAccess(words);
+		final long[] bits = new long[(list.size() + 63) >>> 6];
+		pool.invoke(new TestTask(list, bits, 0, list.size()));
+		return BitSet.valueOf(bits);
+	}
+
+	/**
+	 * Bit i of the result is set iff the ith word of the stream is accepted.
+	 */
+	public BitSet test(Stream<? extends CharSequence> words) {
+		return test(words.toArray(CharSequence[]::new));
+	}
+
+	/**
+	 * State after parsing words[i] at index i, or -1.
+	 */
+	public int[] parse(CharSequence[] words) {
+		return parse(Arrays.asList(words));
+	}
+
+	/**
+	 * State after parsing the ith word at index i, or -1.
+	 */
+	public int[] parse(List<? extends CharSequence> words) {
+		final List<? extends CharSequence> list = randomAccess(words);
+		final int[] states = new int[list.size()];
+		pool.invoke(new ParseTask(list, states, 0, list.size()));
+		return states;
+	}
+
+	/**
+	 * State after parsing the ith word of the stream at index i, or -1.
+	 */
+	public int[] parse(Stream<? extends CharSequence> words) {
+		return parse(words.toArray(CharSequence[]::new));
+	}
+
+	private static List<? extends CharSequence> randomAccess(List<? extends CharSequence> words) {
+		return (words instanceof RandomAccess) ? words : new ArrayList<>(words);
+	}
+
+	private abstract static class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final int from;
+		final int to;
+
+		RangeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected final void compute() {
+			final int middle = (from + (to - from) / 2) & ~63;
+			if (to - from <= LEAF_SIZE || middle <= from) {
+				match();
+			} else {
+				invokeAll(split(from, middle), split(middle, to));
+			}
+		}
+
+		abstract RangeTask split(int from, int to);
+
+		abstract void match();
+	}
+
+	private final class TestTask extends RangeTask {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends CharSequence> words;
+		private final long[] bits;
+
+		TestTask(List<? extends CharSequence> words, long[] bits, int from, int to) {
+			super(from, to);
+			this.words = words;
+			this.bits = bits;
+		}
+
+		@Override
+		RangeTask split(int from, int to) {
+			return new TestTask(words, bits, from, to);
+		}
+
+		@Override
+		void match() {
+			for (int i = from; i < to; i++) {
+				if (dfa.test(words.get(i))) {
+					bits[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+	}
+
+	private final class ParseTask extends RangeTask {
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends CharSequence> words;
+		private final int[] states;
+
+		ParseTask(List<? extends CharSequence> words, int[] states, int from, int to) {
+			super(from, to);
+			this.words = words;
+			this.states = states;
+		}
+
+		@Override
+		RangeTask split(int from, int to) {
+			return new ParseTask(words, states, from, to);
+		}
+
+		@Override
+		void match() {
+			for (int i = from; i < to; i++) {
+				states[i] = dfa.parse(words.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Minimal automaton for many patterns where every accepting state knows which patterns it belongs to, so the
+ * patterns matching a word are found by parsing it once.
+ */
+public final class PatternSet<T> {
+
+	private final MutableArrayDFA<T> automaton;
+
+	private PatternSet(MutableArrayDFA<T> automaton) {
+		this.automaton = automaton;
+	}
+
+	public static <T> Builder<T> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * Minimal automaton accepting words of any pattern, labeled with the values of the patterns.
+	 */
+	public MutableArrayDFA<T> automaton() {
+		return automaton;
+	}
+
+	/**
+	 * Values of all patterns accepting the word.
+	 */
+	public Set<T> matches(CharSequence word) {
+		final List<T> values = automaton.values(automaton.parse(word));
+		return values.isEmpty() ? Collections.emptySet() : new LinkedHashSet<>(values);
+	}
+
+	/**
+	 * Adds patterns one by one.
+	 *
+	 * Patterns are kept in a stack of minimal automata like the digits of a binary counter: a new pattern is pushed
+	 * and the top two automata are replaced by their minimized union while the lower one holds at most as many
+	 * patterns as the upper one. So every pattern takes part in a logarithmic number of unions, and no automaton is
+	 * copied for every added pattern.
+	 *
+	 * Single words are only collected and built into a minimal acyclic automaton with DawgBuilder, then joined with
+	 * the other patterns by build().
+	 */
+	public static final class Builder<T> {
+		private final IntDfaOperations operations = new IntDfaOperations();
+		private final List<MutableArrayDFA<T>> stack = new ArrayList<>();
+		private final List<Integer> counts = new ArrayList<>();
+
+		// values of single words in ascending order of the words
+		private final TreeMap<String, Set<T>> words = new TreeMap<>();
+
+		private Builder() {}
+
+		/**
+		 * Adds a pattern with the labels of its accepting states.
+		 */
+		public Builder<T> add(NDFA<T> pattern) {
+			return push(pattern.dfa());
+		}
+
+		/**
+		 * Adds a pattern that labels all its words with value. Labels of the pattern are dropped.
+		 */
+		public Builder<T> add(SimpleIntDfa pattern, T value) {
+			final MutableArrayDFA<T> labeled = operations.materialize(pattern);
+			for (int state = 0; state < labeled.size(); state++) {
+				if (labeled.accepts(state)) {
+					labeled.reject(state);
+					labeled.accept(state, value);
+				}
+			}
+			return push(labeled);
+		}
+
+		/**
+		 * Adds a single word.
+		 */
+		public Builder<T> add(CharSequence word, T value) {
+			final Set<T> values = words.computeIfAbsent(word.toString(), __ -> new LinkedHashSet<>());
+			if (value != null) {
+				values.add(value);
+			}
+			return this;
+		}
+
+		private Builder<T> push(MutableArrayDFA<T> dfa) {
+			stack.add(operations.minimize(dfa));
+			counts.add(1);
+			while (stack.size() > 1 && counts.get(counts.size() - 2) <= counts.get(counts.size() - 1)) {
+				mergeTop();
+			}
+			return this;
+		}
+
+		private void mergeTop() {
+			final int last = stack.size() - 1;
+			final MutableArrayDFA<T> top = stack.remove(last);
+			final int count = counts.remove(last);
+			stack.set(last - 1, union(stack.get(last - 1), top));
+			counts.set(last - 1, counts.get(last - 1) + count);
+		}
+
+		private MutableArrayDFA<T> union(MutableArrayDFA<T> left, MutableArrayDFA<T> right) {
+			final ProductIntDfa union = new ProductIntDfa(left, right, ProductIntDfa.Operation.UNION);
+			return operations.minimize(operations.materialize(union));
+		}
+
+		public PatternSet<T> build() {
+			while (stack.size() > 1) {
+				mergeTop();
+			}
+			if (words.isEmpty()) {
+				return new PatternSet<>(stack.isEmpty() ? new MutableArrayDFA<>() : stack.get(0));
+			}
+
+			final DawgBuilder<Set<T>> builder = new DawgBuilder<>();
+			for (Map.Entry<String, Set<T>> word : words.entrySet()) {
+				builder.add(word.getKey(), word.getValue());
+			}
+			final MutableArrayDFA<T> dawg = copy(builder);
+			return new PatternSet<>(stack.isEmpty() ? dawg : union(stack.get(0), dawg));
+		}
+
+		// states in depth first order, accepting states labeled with the values of their word
+		private static <T> MutableArrayDFA<T> copy(DawgBuilder<Set<T>> builder) {
+			final int[] order = builder.finish();
+			final int[] ids = new int[builder.states()];
+			final MutableArrayDFA<T> result = new MutableArrayDFA<>();
+			for (int id = 1; id < order.length; id++) {
+				ids[order[id]] = result.newState();
+			}
+			for (int state : order) {
+				for (int i = 0, max = builder.labels(state); i < max; i++) {
+					result.connect(ids[state], builder.label(state, i), ids[builder.target(state, i)]);
+				}
+				final Set<T> values = builder.payload(state);
+				if (values != null) {
+					result.accept(ids[state]);
+					for (T value : values) {
+						result.accept(ids[state], value);
+					}
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Product of two automata that creates its states on first use.
+ *
+ * A state is a pair of states of the two automata, where -1 stands for the dead state of an automaton. Pairs that
+ * are dead by the operation alone (both sides -1 for a union, either side for an intersection, the left side for a
+ * difference) are merged into a single sink state without edges. The sink is only used when a letter leads there
+ * but '*' does not, otherwise the edge is left out. Other pairs that can not reach an accepting state are kept;
+ * minimize the materialized copy or trim() it to drop them.
+ *
+ * States are numbered in the order they are reached, so size() grows while the automaton is explored. Copies such as
+ * minimize(), freeze() or TableIntDfa.of() explore it completely first; IntDfaOperations.materialize() copies only
+ * the states reachable from the start state. Not thread safe.
+ */
+public final class ProductIntDfa implements SimpleIntDfa {
+
+	enum Operation {
+		UNION, INTERSECT, MINUS
+	}
+
+	private static final long DEAD = combineInts(-1, -1);
+
+	private final SimpleIntDfa left;
+	private final SimpleIntDfa right;
+	private final Operation operation;
+
+	// pairs of states by id
+	private final StateSets pairs = new StateSets(1, 16);
+	private final long[] buffer = new long[1];
+
+	// edges of state i, null when not computed yet
+	private char[][] labels = new char[16][];
+	private int[][] targets = new int[16][];
+
+	ProductIntDfa(SimpleIntDfa left, SimpleIntDfa right, Operation operation) {
+		this.left = left;
+		this.right = right;
+		this.operation = operation;
+		intern(combineInts(START, START));
+	}
+
+	private int intern(long pair) {
+		buffer[0] = pair;
+		final int hash = pairs.hash(buffer, 0);
+		final int id = pairs.find(buffer, 0, hash);
+		return (id == -1) ? pairs.add(buffer, 0, hash) : id;
+	}
+
+	private long pair(int state) {
+		return pairs.sets()[state];
+	}
+
+	// pair after reading c, normalized to DEAD
+	private long next(long pair, char c) {
+		final int a = next(left, decombineInt1(pair), c);
+		final int b = next(right, decombineInt2(pair), c);
+		final boolean dead;
+		switch (operation) {
+			case UNION: dead = a == -1 && b == -1; break;
+			case INTERSECT: dead = a == -1 || b == -1; break;
+			default: dead = a == -1;
+		}
+		return dead ? DEAD : combineInts(a, b);
+	}
+
+	private static int next(SimpleIntDfa dfa, int state, char c) {
+		if (state == -1) return -1;
+		final int target = dfa.step(state, c);
+		return (target == -1 && c != ANY) ? dfa.step(state, ANY) : target;
+	}
+
+	private void computeEdges(int state) {
+		final long pair = pair(state);
+		if (pair == DEAD) {
+			labels[state] = new char[0];
+			targets[state] = new int[0];
+			return;
+		}
+
+		final char[] letters = letters(decombineInt1(pair), decombineInt2(pair));
+		final char[] edgeLabels = new char[letters.length + 1];
+		final int[] edgeTargets = new int[letters.length + 1];
+		int count = 0;
+
+		final long anyPair = next(pair, ANY);
+		int anyTarget = -1;
+		if (anyPair != DEAD) {
+			anyTarget = intern(anyPair);
+			edgeLabels[count] = ANY;
+			edgeTargets[count++] = anyTarget;
+		}
+
+		for (char c : letters) {
+			final long targetPair = next(pair, c);
+			if (targetPair == DEAD && anyTarget == -1) continue; // '*' is dead too
+			final int target = intern(targetPair);
+			if (target == anyTarget) continue; // if same as for * then we can skip
+			edgeLabels[count] = c;
+			edgeTargets[count++] = target;
+		}
+
+		// arrays may have been grown by intern()
+		labels[state] = Arrays.copyOf(edgeLabels, count);
+		targets[state] = Arrays.copyOf(edgeTargets, count);
+	}
+
+	// explicit letters of the states in ascending order without '*'
+	private char[] letters(int a, int b) {
+		final int leftLabels = (a == -1) ? 0 : left.labels(a);
+		final int rightLabels = (b == -1) ? 0 : right.labels(b);
+		final char[] letters = new char[leftLabels + rightLabels];
+		int size = 0;
+		for (int i = 0; i < leftLabels; i++) letters[size++] = left.label(a, i);
+		for (int i = 0; i < rightLabels; i++) letters[size++] = right.label(b, i);
+		Arrays.sort(letters, 0, size);
+
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (letters[i] != ANY && (count == 0 || letters[count - 1] != letters[i])) letters[count++] = letters[i];
+		}
+		return Arrays.copyOf(letters, count);
+	}
+
+	private void ensureEdges(int state) {
+		if (state >= labels.length) {
+			final int capacity = Math.max(labels.length * 2, pairs.size());
+			labels = Arrays.copyOf(labels, capacity);
+			targets = Arrays.copyOf(targets, capacity);
+		}
+		if (labels[state] == null) {
+			computeEdges(state);
+		}
+	}
+
+	/**
+	 * Number of states reached so far.
+	 */
+	@Override
+	public int size() {
+		return pairs.size();
+	}
+
+	@Override
+	public int step(int state, char c) {
+		ensureEdges(state);
+		final int idx = Arrays.binarySearch(labels[state], c);
+		return idx < 0 ? -1 : targets[state][idx];
+	}
+
+	@Override
+	public char label(int state, int n) {
+		ensureEdges(state);
+		return labels[state][n];
+	}
+
+	@Override
+	public int target(int state, int n) {
+		ensureEdges(state);
+		return targets[state][n];
+	}
+
+	@Override
+	public int labels(int state) {
+		ensureEdges(state);
+		return labels[state].length;
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		if (state < 0) return false;
+		final long pair = pair(state);
+		final boolean a = left.accepts(decombineInt1(pair));
+		final boolean b = right.accepts(decombineInt2(pair));
+		switch (operation) {
+			case UNION: return a || b;
+			case INTERSECT: return a && b;
+			default: return a && !b;
+		}
+	}
+
+	/**
+	 * Labels of an accepting state: labels of the accepting component states.
+	 */
+	<T> List<T> values(int state) {
+		if (!accepts(state)) return Collections.emptyList();
+		final long pair = pair(state);
+		final List<T> a = IntDfaOperations.values(left, decombineInt1(pair));
+		if (operation == Operation.MINUS) return a;
+
+		final List<T> b = IntDfaOperations.values(right, decombineInt2(pair));
+		if (b.isEmpty()) return a;
+		if (a.isEmpty()) return b;
+		final Set<T> result = new LinkedHashSet<>(a);
+		result.addAll(b);
+		return new ArrayList<>(result);
+	}
+
+	private static long combineInts(int a, int b) {
+		return (long) a << 32 | b & 0xFFFFFFFFL;
+	}
+
+	private static int decombineInt1(long c) {
+		return (int) (c >> 32);
+	}
+
+	private static int decombineInt2(long c) {
+		return (int) c;
+	}
+}
@@ -0,0 +1,74 @@
+package dev.erdos.automata;
+
+import java.util.function.Predicate;
+
+/**
+ * Deterministic Finite Automaton where edges are labeled with ranges of characters.
+ *
+ * Ranges of a state are disjoint and sorted, characters not in any range lead to the dead state. There is no '*'
+ * edge: a range covering the rest of the alphabet is just another range, so character classes like letters or
+ * whitespace take a few edges instead of one for every character.
+ */
+public interface RangeIntDfa extends Predicate<CharSequence> {
+
+	int START = 0;
+
+	/**
+	 * Number of states in this automaton.
+	 */
+	int size();
+
+	/**
+	 * Number of ranges leaving state.
+	 */
+	int ranges(int state);
+
+	/**
+	 * First character of the nth range of state.
+	 */
+	char from(int state, int n);
+
+	/**
+	 * Last character of the nth range of state, inclusive.
+	 */
+	char to(int state, int n);
+
+	/**
+	 * Target of the nth range of state.
+	 */
+	int target(int state, int n);
+
+	/**
+	 * Returns true iff parameter identifies an accepting state.
+	 */
+	boolean accepts(int state);
+
+	/**
+	 * Returns the next state after reading character or -1 when no range contains it.
+	 */
+	default int step(int state, char c) {
+		int lo = 0;
+		int hi = ranges(state) - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (to(state, mid) < c) lo = mid + 1;
+			else if (from(state, mid) > c) hi = mid - 1;
+			else return target(state, mid);
+		}
+		return -1;
+	}
+
+	// return state after parsing word.
+	default int parse(CharSequence word) {
+		int state = START;
+		for (int i = 0, len = word.length(); i < len && state != -1; i++) {
+			state = step(state, word.charAt(i));
+		}
+		return state;
+	}
+
+	@Override
+	default boolean test(CharSequence word) {
+		return accepts(parse(word));
+	}
+}
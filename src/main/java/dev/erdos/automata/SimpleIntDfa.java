@@ -56,4 +56,18 @@ public interface SimpleIntDfa extends Predicate<CharSequence> {
 	default boolean test(CharSequence word) {
 		return accepts(parse(word));
 	}
+
+	/**
+	 * Returns an immutable copy of this automaton that is optimized for matching.
+	 */
+	default CompactIntDfa freeze() {
+		return CompactIntDfa.freeze(this);
+	}
+
+	/**
+	 * Finds the states that can still reach an accepting state and the ones that accept every continuation.
+	 */
+	default StateAnalysis analyze() {
+		return StateAnalysis.of(this);
+	}
 }
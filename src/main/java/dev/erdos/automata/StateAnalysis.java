@@ -0,0 +1,128 @@
+package dev.erdos.automata;
+
+/**
+ * Precomputed facts about the states of an automaton: which states can still reach an accepting state (live) and
+ * which states accept every continuation (universal).
+ *
+ * Words through a state that is not live are never accepted, so matching can stop there. Words through a universal
+ * state are always accepted, so matching can stop there too. Computing it visits every state and edge, so lazy
+ * automata are explored completely.
+ */
+public final class StateAnalysis {
+
+	private final SimpleIntDfa dfa;
+	private final long[] live;
+	private final long[] universal;
+
+	private StateAnalysis(SimpleIntDfa dfa, long[] live, long[] universal) {
+		this.dfa = dfa;
+		this.live = live;
+		this.universal = universal;
+	}
+
+	public static StateAnalysis of(SimpleIntDfa dfa) {
+		// explores lazy automata first so size() is final
+		int edgeCount = 0;
+		for (int state = 0; state < dfa.size(); state++) {
+			edgeCount += dfa.labels(state);
+		}
+		final int size = dfa.size();
+
+		// reverse edges: sources of state t are at sources[offsets[t] ..< offsets[t + 1]]
+		final int[] offsets = new int[size + 1];
+		for (int state = 0; state < size; state++) {
+			for (int i = 0, max = dfa.labels(state); i < max; i++) {
+				offsets[dfa.target(state, i) + 1]++;
+			}
+		}
+		for (int state = 0; state < size; state++) {
+			offsets[state + 1] += offsets[state];
+		}
+		final int[] sources = new int[edgeCount];
+		final int[] fill = new int[size];
+		for (int state = 0; state < size; state++) {
+			for (int i = 0, max = dfa.labels(state); i < max; i++) {
+				final int target = dfa.target(state, i);
+				sources[offsets[target] + fill[target]++] = state;
+			}
+		}
+
+		final int[] stack = new int[size];
+
+		// live: accepting states and everything that leads there
+		final long[] live = new long[(size + 63) >>> 6];
+		int top = 0;
+		for (int state = 0; state < size; state++) {
+			if (dfa.accepts(state)) {
+				set(live, state);
+				stack[top++] = state;
+			}
+		}
+		while (top > 0) {
+			final int state = stack[--top];
+			for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+				if (!get(live, sources[i])) {
+					set(live, sources[i]);
+					stack[top++] = sources[i];
+				}
+			}
+		}
+
+		// universal: greatest set of accepting states with a '*' edge whose edges all stay in the set
+		final long[] universal = new long[(size + 63) >>> 6];
+		for (int state = 0; state < size; state++) {
+			if (dfa.accepts(state) && dfa.step(state, SimpleIntDfa.ANY) != -1) {
+				set(universal, state);
+			}
+		}
+		for (int state = 0; state < size; state++) {
+			if (!get(universal, state)) {
+				stack[top++] = state;
+			}
+		}
+		while (top > 0) {
+			final int state = stack[--top];
+			for (int i = offsets[state]; i < offsets[state + 1]; i++) {
+				if (get(universal, sources[i])) {
+					clear(universal, sources[i]);
+					stack[top++] = sources[i];
+				}
+			}
+		}
+		return new StateAnalysis(dfa, live, universal);
+	}
+
+	public SimpleIntDfa dfa() {
+		return dfa;
+	}
+
+	/**
+	 * True iff an accepting state is reachable from state (including itself). False for -1.
+	 */
+	public boolean canReachAccept(int state) {
+		return state >= 0 && get(live, state);
+	}
+
+	/**
+	 * True iff every word read from state, including the empty word, ends in an accepting state. False for -1.
+	 */
+	public boolean alwaysAccepts(int state) {
+		return state >= 0 && get(universal, state);
+	}
+
+	public DfaCursor cursor() {
+		return new DfaCursor(this);
+	}
+
+	private static boolean get(long[] bits, int state) {
+		return (bits[state >>> 6] & (1L << state)) != 0;
+	}
+
+	private static void set(long[] bits, int state) {
+		bits[state >>> 6] |= 1L << state;
+	}
+
+	private static void clear(long[] bits, int state) {
+		bits[state >>> 6] &= ~(1L << state);
+	}
+}
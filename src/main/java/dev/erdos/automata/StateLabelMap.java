@@ -1,36 +1,86 @@
 package dev.erdos.automata;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Accepting states and their labels.
+ *
+ * Accepting states are kept in a bitset, labels in an array indexed by state. The array is only allocated when
+ * the first label is added, so automata without labels only pay for the bitset.
+ */
 public final class StateLabelMap<T> {
 
-	private final Map<Integer, List<T>> values = new HashMap<>(4);
+	private long[] accepting = new long[1];
 
+	// labels of state i or null when it has none
+	private Object[][] values;
+
+	/**
+	 * Marks state as accepting and adds value to its labels unless it is null.
+	 */
 	public void put(int state, T value) {
-		values.computeIfAbsent(state, __ -> new ArrayList<>()).add(value);
+		assert state >= 0;
+		if (state >>> 6 >= accepting.length) {
+			accepting = Arrays.copyOf(accepting, Math.max(accepting.length * 2, (state >>> 6) + 1));
+		}
+		accepting[state >>> 6] |= 1L << state;
+
+		if (value != null) {
+			if (values == null) {
+				values = new Object[Math.max(16, state + 1)][];
+			} else if (state >= values.length) {
+				values = Arrays.copyOf(values, Math.max(values.length * 2, state + 1));
+			}
+			final Object[] old = values[state];
+			if (old == null) {
+				values[state] = new Object[] {value};
+			} else {
+				final Object[] added = Arrays.copyOf(old, old.length + 1);
+				added[old.length] = value;
+				values[state] = added;
+			}
+		}
 	}
 
+	/**
+	 * Labels of state in order of addition, an empty list when it has none.
+	 */
+	@SuppressWarnings("unchecked")
 	public List<T> values(int state) {
-		return values.getOrDefault(state, Collections.emptyList());
+		if (values == null || state < 0 || state >= values.length || values[state] == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList((List<T>) Arrays.asList(values[state]));
 	}
 
 	public boolean hasKey(int state) {
-		return values.containsKey(state);
+		return state >= 0 && state >>> 6 < accepting.length && (accepting[state >>> 6] & (1L << state)) != 0;
 	}
 
 	public String debug() {
-		return values.toString();
+		final StringBuilder builder = new StringBuilder("{");
+		for (int w = 0; w < accepting.length; w++) {
+			for (long bits = accepting[w]; bits != 0; bits &= bits - 1) {
+				final int state = (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (builder.length() > 1) builder.append(", ");
+				builder.append(state).append('=').append(values(state));
+			}
+		}
+		return builder.append('}').toString();
 	}
 
 	public void clear() {
-		values.clear();
+		Arrays.fill(accepting, 0L);
+		values = null;
 	}
 
 	public void remove(int state) {
-		values.remove(state);
+		if (!hasKey(state)) return;
+		accepting[state >>> 6] &= ~(1L << state);
+		if (values != null && state < values.length) {
+			values[state] = null;
+		}
 	}
 }
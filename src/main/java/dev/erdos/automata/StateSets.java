@@ -0,0 +1,98 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+
+/**
+ * Interns sets of NDFA states stored as bitsets of a fixed number of longs. Sets get consecutive ids from zero.
+ */
+final class StateSets {
+
+	private final int words;
+	private int size;
+
+	// set with id i is at [i * words ..< (i + 1) * words]
+	private long[] sets;
+	private int[] hashes;
+
+	// open addressing hash table of set id + 1, zero for empty slot
+	private int[] table;
+
+	StateSets(int words, int capacity) {
+		this.words = words;
+		this.sets = new long[capacity * words];
+		this.hashes = new int[capacity];
+		this.table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+	}
+
+	int size() {
+		return size;
+	}
+
+	// storage of all sets, the set of id starts at id * words.
+	long[] sets() {
+		return sets;
+	}
+
+	void clear() {
+		size = 0;
+		Arrays.fill(table, 0);
+	}
+
+	int hash(long[] set, int offset) {
+		int h = 1;
+		for (int w = 0; w < words; w++) {
+			// mixed so that sets differing in a few bits, and pairs packed in a long, spread well
+			long bits = set[offset + w] * 0x9E3779B97F4A7C15L;
+			h = 31 * h + (int) (bits ^ (bits >>> 32));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	// id of the set or -1
+	int find(long[] set, int offset, int hash) {
+		final int mask = table.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			final int id = table[slot] - 1;
+			if (id == -1) return -1;
+			if (hashes[id] == hash && equal(id, set, offset)) return id;
+		}
+	}
+
+	private boolean equal(int id, long[] set, int offset) {
+		for (int w = 0, from = id * words; w < words; w++) {
+			if (sets[from + w] != set[offset + w]) return false;
+		}
+		return true;
+	}
+
+	// adds a set that is not in the table yet and returns its id
+	int add(long[] set, int offset, int hash) {
+		if (size == hashes.length) {
+			grow();
+		}
+		final int id = size++;
+		System.arraycopy(set, offset, sets, id * words, words);
+		hashes[id] = hash;
+		insert(id);
+		return id;
+	}
+
+	private void insert(int id) {
+		final int mask = table.length - 1;
+		int slot = hashes[id] & mask;
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = id + 1;
+	}
+
+	private void grow() {
+		final int capacity = hashes.length * 2;
+		sets = Arrays.copyOf(sets, capacity * words);
+		hashes = Arrays.copyOf(hashes, capacity);
+		table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+		for (int id = 0; id < size; id++) {
+			insert(id);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package dev.erdos.automata;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable Deterministic Finite Automaton with a dense transition table.
+ *
+ * Characters are mapped to equivalence classes: letters that lead to the same state from every state share a class,
+ * and class 0 stands for all characters without an explicit edge ('*'). The target of state s on class k is at
+ * table[s * classes + k], so reading a character is a class lookup and one array load. Classes of ASCII characters
+ * are looked up in an array, the rest with a binary search.
+ */
+public final class TableIntDfa implements SimpleIntDfa {
+
+	private static final int ASCII = 128;
+
+	private final int size;
+	private final int classes;
+	private final int[] table;
+	private final long[] accepting;
+
+	// explicit letters in ascending order and their classes
+	private final char[] letters;
+	private final int[] letterClasses;
+	private final int[] asciiClasses = new int[ASCII];
+
+	// explicit edges of state i are edgeLabels[edgeOffsets[i] ..< edgeOffsets[i + 1]]
+	private final int[] edgeOffsets;
+	private final char[] edgeLabels;
+
+	private TableIntDfa(int size, int classes, int[] table, long[] accepting, char[] letters, int[] letterClasses) {
+		this.size = size;
+		this.classes = classes;
+		this.table = table;
+		this.accepting = accepting;
+		this.letters = letters;
+		this.letterClasses = letterClasses;
+		for (int i = 0; i < letters.length && letters[i] < ASCII; i++) {
+			asciiClasses[letters[i]] = letterClasses[i];
+		}
+
+		// explicit edges are '*' and the letters that do not lead to the same state as '*'
+		this.edgeOffsets = new int[size + 1];
+		char[] labels = new char[Math.max(16, size)];
+		int count = 0;
+		for (int state = 0; state < size; state++) {
+			edgeOffsets[state] = count;
+			final int any = table[state * classes];
+			if (count + letters.length + 1 > labels.length) {
+				labels = Arrays.copyOf(labels, Math.max(labels.length * 2, count + letters.length + 1));
+			}
+			if (any != -1) {
+				labels[count++] = ANY;
+			}
+			for (int i = 0; i < letters.length; i++) {
+				if (table[state * classes + letterClasses[i]] != any) {
+					labels[count++] = letters[i];
+				}
+			}
+		}
+		edgeOffsets[size] = count;
+		this.edgeLabels = Arrays.copyOf(labels, count);
+	}
+
+	/**
+	 * Creates a table for an automaton.
+	 *
+	 * @throws IllegalArgumentException when the table would have more than Integer.MAX_VALUE cells
+	 */
+	public static TableIntDfa of(SimpleIntDfa dfa) {
+		final int size = IntDfaOperations.explore(dfa);
+		final char[] alphabet = alphabet(dfa);
+
+		// column of '*' and of each letter: target from every state
+		final int[] any = new int[size];
+		for (int state = 0; state < size; state++) {
+			any[state] = dfa.step(state, ANY);
+		}
+		final Map<Column, Integer> columns = new HashMap<>();
+		columns.put(new Column(any), 0);
+
+		final int[] letterClasses = new int[alphabet.length];
+		for (int i = 0; i < alphabet.length; i++) {
+			final int[] column = new int[size];
+			for (int state = 0; state < size; state++) {
+				final int target = dfa.step(state, alphabet[i]);
+				column[state] = (target == -1) ? any[state] : target;
+			}
+			final Integer known = columns.putIfAbsent(new Column(column), columns.size());
+			letterClasses[i] = (known == null) ? columns.size() - 1 : known;
+		}
+
+		final int classes = columns.size();
+		if ((long) size * classes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Table is too large: " + size + " states, " + classes + " classes");
+		}
+		final int[] table = new int[size * classes];
+		for (Map.Entry<Column, Integer> entry : columns.entrySet()) {
+			final int[] column = entry.getKey().targets;
+			for (int state = 0; state < size; state++) {
+				table[state * classes + entry.getValue()] = column[state];
+			}
+		}
+
+		final long[] accepting = new long[(size + 63) >>> 6];
+		for (int state = 0; state < size; state++) {
+			if (dfa.accepts(state)) {
+				accepting[state >>> 6] |= 1L << state;
+			}
+		}
+
+		// letters in class 0 behave like any other character
+		int count = 0;
+		for (int i = 0; i < alphabet.length; i++) {
+			if (letterClasses[i] != 0) {
+				alphabet[count] = alphabet[i];
+				letterClasses[count++] = letterClasses[i];
+			}
+		}
+		return new TableIntDfa(size, classes, table, accepting, Arrays.copyOf(alphabet, count), Arrays.copyOf(letterClasses, count));
+	}
+
+	// explicit labels of all states in ascending order
+	private static char[] alphabet(SimpleIntDfa dfa) {
+		final boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+		int count = 0;
+		for (int state = 0; state < dfa.size(); state++) {
+			for (int i = 0, max = dfa.labels(state); i < max; i++) {
+				final char c = dfa.label(state, i);
+				if (c != ANY && !seen[c]) {
+					seen[c] = true;
+					count++;
+				}
+			}
+		}
+		final char[] result = new char[count];
+		for (int c = 0, i = 0; i < count; c++) {
+			if (seen[c]) result[i++] = (char) c;
+		}
+		return result;
+	}
+
+	/**
+	 * Number of character classes including the one for '*'.
+	 */
+	public int classes() {
+		return classes;
+	}
+
+	private int classOf(char c) {
+		if (c < ASCII) {
+			return asciiClasses[c];
+		}
+		final int idx = Arrays.binarySearch(letters, c);
+		return (idx < 0) ? 0 : letterClasses[idx];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int step(int state, char c) {
+		if (c == ANY) return table[state * classes];
+		final int k = classOf(c);
+		return (k == 0) ? -1 : table[state * classes + k];
+	}
+
+	@Override
+	public char label(int state, int n) {
+		assert n < edgeOffsets[state + 1] - edgeOffsets[state];
+		return edgeLabels[edgeOffsets[state] + n];
+	}
+
+	@Override
+	public int labels(int state) {
+		return edgeOffsets[state + 1] - edgeOffsets[state];
+	}
+
+	@Override
+	public int target(int state, int n) {
+		final char c = label(state, n);
+		return table[state * classes + ((c == ANY) ? 0 : classOf(c))];
+	}
+
+	@Override
+	public boolean accepts(int state) {
+		return state >= 0 && (accepting[state >>> 6] & (1L << state)) != 0;
+	}
+
+	@Override
+	public int parse(CharSequence word) {
+		int state = START;
+		for (int i = 0, len = word.length(); i < len; i++) {
+			state = table[state * classes + classOf(word.charAt(i))];
+			if (state == -1) return -1;
+		}
+		return state;
+	}
+
+	private static final class Column {
+		private final int[] targets;
+		private final int hash;
+
+		Column(int[] targets) {
+			this.targets = targets;
+			this.hash = Arrays.hashCode(targets);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Column && ((Column) o).hash == hash && Arrays.equals(((Column) o).targets, targets);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
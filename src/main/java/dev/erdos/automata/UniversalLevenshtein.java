@@ -0,0 +1,303 @@
+package dev.erdos.automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Universal Levenshtein automaton (Schulz and Mihov) for a fixed distance.
+ *
+ * States of the Levenshtein automaton of any word are pairs of a base position in the word and a parametric state.
+ * A parametric state is a set of (offset, errors) positions relative to the base. Transitions only depend on the
+ * characteristic vector of the input character in the next 2d+1 letters of the word after the base, so the table is
+ * computed once per distance and a matcher for a new word is built in O(|word|).
+ */
+public final class UniversalLevenshtein {
+
+	private static final UniversalLevenshtein[] INSTANCES = new UniversalLevenshtein[8];
+
+	private final int distance;
+
+	// length of the characteristic vectors
+	private final int window;
+
+	// number of characteristic vectors of length 0..window
+	private final int vectors;
+
+	private final int states;
+
+	// (shift << 16 | target) for parametric state q and vector index v at [q * vectors + v], or -1.
+	private final int[] transitions;
+
+	// parametric state q accepts at base b of word w iff |w| - b <= reach[q]
+	private final int[] reach;
+
+	private UniversalLevenshtein(int distance) {
+		assert distance >= 0;
+		this.distance = distance;
+		this.window = 2 * distance + 1;
+		this.vectors = (1 << (window + 1)) - 1;
+
+		// positions are encoded as offset * (distance + 1) + errors, states are sorted arrays of positions
+		final Map<List<Integer>, Integer> index = new HashMap<>();
+		final List<int[]> parametricStates = new ArrayList<>();
+		final List<int[]> rows = new ArrayList<>();
+
+		add(new int[] {0}, index, parametricStates);
+
+		for (int q = 0; q < parametricStates.size(); q++) {
+			final int[] state = parametricStates.get(q);
+			final int[] row = new int[vectors];
+			Arrays.fill(row, -1);
+
+			final int maxOffset = offset(state[state.length - 1]);
+			for (int k = 0; k <= window; k++) {
+				if (maxOffset > k) continue; // position would be after the end of the word
+				for (int bits = 0; bits < (1 << k); bits++) {
+					final int[] next = step(state, k, bits);
+					if (next.length == 0) continue;
+
+					final int shift = offset(next[0]);
+					for (int i = 0; i < next.length; i++) {
+						next[i] -= shift * (distance + 1);
+					}
+					final int target = add(next, index, parametricStates);
+					row[(1 << k) - 1 + bits] = shift << 16 | target;
+				}
+			}
+			rows.add(row);
+		}
+
+		this.states = parametricStates.size();
+		assert states < (1 << 16);
+
+		this.transitions = new int[states * vectors];
+		this.reach = new int[states];
+		for (int q = 0; q < states; q++) {
+			System.arraycopy(rows.get(q), 0, transitions, q * vectors, vectors);
+			int max = Integer.MIN_VALUE;
+			for (int position : parametricStates.get(q)) {
+				max = Math.max(max, offset(position) + distance - errors(position));
+			}
+			reach[q] = max;
+		}
+	}
+
+	/**
+	 * Universal automaton for a distance. Instances for small distances are shared.
+	 */
+	public static UniversalLevenshtein of(int distance) {
+		if (distance < 0) {
+			throw new IllegalArgumentException("Distance must not be negative: " + distance);
+		} else if (distance >= INSTANCES.length) {
+			return new UniversalLevenshtein(distance);
+		}
+		synchronized (INSTANCES) {
+			UniversalLevenshtein instance = INSTANCES[distance];
+			if (instance == null) {
+				instance = INSTANCES[distance] = new UniversalLevenshtein(distance);
+			}
+			return instance;
+		}
+	}
+
+	private int offset(int position) {
+		return position / (distance + 1);
+	}
+
+	private int errors(int position) {
+		return position % (distance + 1);
+	}
+
+	private int position(int offset, int errors) {
+		return offset * (distance + 1) + errors;
+	}
+
+	private static int add(int[] state, Map<List<Integer>, Integer> index, List<int[]> states) {
+		final List<Integer> key = new ArrayList<>(state.length);
+		for (int position : state) {
+			key.add(position);
+		}
+		Integer id = index.get(key);
+		if (id == null) {
+			id = states.size();
+			index.put(key, id);
+			states.add(state);
+		}
+		return id;
+	}
+
+	// elementary transitions of all positions on a characteristic vector of length k. result is sorted and reduced.
+	private int[] step(int[] state, int k, int bits) {
+		final List<Integer> result = new ArrayList<>();
+		for (int position : state) {
+			final int offset = offset(position);
+			final int errors = errors(position);
+
+			if (offset < k && (bits & (1 << offset)) != 0) {
+				result.add(position(offset + 1, errors));
+			}
+			if (errors < distance) {
+				result.add(position(offset, errors + 1)); // insertion
+				if (offset < k) {
+					result.add(position(offset + 1, errors + 1)); // substitution
+				}
+				for (int j = 1; j <= distance - errors; j++) {
+					if (offset + j < k && (bits & (1 << (offset + j))) != 0) {
+						result.add(position(offset + j + 1, errors + j)); // deletions, then match
+					}
+				}
+			}
+		}
+
+		int[] reduced = new int[result.size()];
+		int size = 0;
+		for (int position : result) {
+			if (!subsumed(position, result)) reduced[size++] = position;
+		}
+		reduced = Arrays.copyOf(reduced, size);
+		Arrays.sort(reduced);
+
+		// remove duplicates
+		size = 0;
+		for (int i = 0; i < reduced.length; i++) {
+			if (i == 0 || reduced[i] != reduced[i - 1]) reduced[size++] = reduced[i];
+		}
+		return Arrays.copyOf(reduced, size);
+	}
+
+	// true when another position has less errors and covers this one
+	private boolean subsumed(int position, List<Integer> positions) {
+		for (int other : positions) {
+			final int errors = errors(position) - errors(other);
+			if (errors > 0 && Math.abs(offset(position) - offset(other)) <= errors) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int distance() {
+		return distance;
+	}
+
+	/**
+	 * Number of parametric states.
+	 */
+	public int size() {
+		return states;
+	}
+
+	/**
+	 * Automaton that accepts words within the distance of word.
+	 */
+	public SimpleIntDfa matcher(CharSequence word) {
+		final char[] letters = new char[word.length()];
+		for (int i = 0; i < letters.length; i++) {
+			letters[i] = word.charAt(i);
+		}
+		return new Matcher(letters);
+	}
+
+	/**
+	 * State id is base * (number of parametric states) + parametric state.
+	 */
+	private final class Matcher implements SimpleIntDfa {
+		private final char[] word;
+
+		private Matcher(char[] word) {
+			this.word = word;
+		}
+
+		private int base(int state) {
+			return state / states;
+		}
+
+		// length of characteristic vector at base
+		private int length(int base) {
+			return Math.min(window, word.length - base);
+		}
+
+		private int vector(int base, int k, char c) {
+			int bits = 0;
+			for (int j = 0; j < k; j++) {
+				if (word[base + j] == c) bits |= 1 << j;
+			}
+			return bits;
+		}
+
+		private int transition(int state, int k, int bits) {
+			final int base = base(state);
+			final int t = transitions[(state - base * states) * vectors + (1 << k) - 1 + bits];
+			return (t == -1) ? -1 : (base + (t >>> 16)) * states + (t & 0xFFFF);
+		}
+
+		@Override
+		public int size() {
+			return (word.length + 1) * states;
+		}
+
+		@Override
+		public int step(int state, char c) {
+			final int base = base(state);
+			final int k = length(base);
+			final int bits = (c == ANY) ? 0 : vector(base, k, c);
+			if (bits == 0 && c != ANY) return -1;
+			return transition(state, k, bits);
+		}
+
+		@Override
+		public int parse(CharSequence input) {
+			int state = START;
+			for (int i = 0, len = input.length(); i < len && state != -1; i++) {
+				final int base = base(state);
+				final int k = length(base);
+				state = transition(state, k, vector(base, k, input.charAt(i)));
+			}
+			return state;
+		}
+
+		// explicit labels are the distinct letters of the window that do not lead to the same state as '*'
+		private char[] labels(int state, int[] count) {
+			final int base = base(state);
+			final int k = length(base);
+			final int any = transition(state, k, 0);
+			final char[] result = new char[k + 1];
+			int size = 0;
+			if (any != -1) result[size++] = ANY;
+			for (int j = 0; j < k; j++) {
+				final char c = word[base + j];
+				if (c == ANY || vector(base, j, c) != 0) continue; // seen before
+				final int target = transition(state, k, vector(base, k, c));
+				if (target != -1 && target != any) result[size++] = c;
+			}
+			Arrays.sort(result, 0, size);
+			count[0] = size;
+			return result;
+		}
+
+		@Override
+		public char label(int state, int n) {
+			final int[] count = new int[1];
+			final char[] labels = labels(state, count);
+			if (n >= count[0]) throw new IndexOutOfBoundsException("No edge " + n + " from state " + state);
+			return labels[n];
+		}
+
+		@Override
+		public int labels(int state) {
+			final int[] count = new int[1];
+			labels(state, count);
+			return count[0];
+		}
+
+		@Override
+		public boolean accepts(int state) {
+			if (state < 0) return false;
+			final int base = base(state);
+			return word.length - base <= reach[state - base * states];
+		}
+	}
+}
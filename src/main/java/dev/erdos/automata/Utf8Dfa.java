@@ -0,0 +1,324 @@
+package dev.erdos.automata;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static dev.erdos.automata.SimpleIntDfa.ANY;
+
+/**
+ * Automaton over the UTF-8 bytes of words, compiled from an automaton over chars.
+ *
+ * A word is accepted iff it is valid UTF-8 and its code points are accepted by the source automaton, where '*'
+ * stands for a whole code point. A supplementary code point follows an explicit edge of its high surrogate and then
+ * the edge of its low surrogate (so edges written for UTF-16 strings still work), otherwise it takes the '*' edge
+ * at once.
+ *
+ * Every state of the source automaton is a node with the same id. Nodes in the middle of a multi byte sequence are
+ * added where the target depends on the following bytes; sequences that lead to the same state whatever follows
+ * share their nodes.
+ *
+ * Bytes are mapped to equivalence classes like the characters of TableIntDfa: bytes that lead to the same node from
+ * every node share a class. Only ASCII letters of the source and a few groups of lead and continuation bytes differ
+ * usually, so a node is a row of a few dozen targets instead of 256. Reading a byte is a class lookup and one load.
+ *
+ * Thread safe.
+ */
+public final class Utf8Dfa {
+
+	private static final int MIN_SURROGATE = 0xD800;
+	private static final int MAX_SURROGATE = 0xDFFF;
+	private static final int MIN_LOW_SURROGATE = 0xDC00;
+	private static final int MAX_HIGH_SURROGATE = 0xDBFF;
+
+	private final int states;
+	private final int nodes;
+	private final int classes;
+	private final int[] byteClasses;
+	private final int[] table;
+	private final long[] accepting;
+
+	private Utf8Dfa(int states, int nodes, int classes, int[] byteClasses, int[] table, long[] accepting) {
+		this.states = states;
+		this.nodes = nodes;
+		this.classes = classes;
+		this.byteClasses = byteClasses;
+		this.table = table;
+		this.accepting = accepting;
+	}
+
+	public static Utf8Dfa of(SimpleIntDfa dfa) {
+		return new Compiler(dfa).compile();
+	}
+
+	/**
+	 * Number of nodes including the states of the source automaton.
+	 */
+	public int size() {
+		return nodes;
+	}
+
+	/**
+	 * Number of byte classes, the length of a row of the table.
+	 */
+	public int classes() {
+		return classes;
+	}
+
+	public boolean test(byte[] bytes) {
+		return test(bytes, 0, bytes.length);
+	}
+
+	public boolean test(byte[] bytes, int offset, int length) {
+		int node = SimpleIntDfa.START;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			node = table[node * classes + byteClasses[bytes[i] & 0xFF]];
+			if (node == -1) return false;
+		}
+		return accepts(node);
+	}
+
+	/**
+	 * Tests the remaining bytes of buffer without changing its position.
+	 */
+	public boolean test(ByteBuffer buffer) {
+		int node = SimpleIntDfa.START;
+		for (int i = buffer.position(), end = buffer.limit(); i < end; i++) {
+			node = table[node * classes + byteClasses[buffer.get(i) & 0xFF]];
+			if (node == -1) return false;
+		}
+		return accepts(node);
+	}
+
+	private boolean accepts(int node) {
+		return node < states && (accepting[node >>> 6] & (1L << node)) != 0;
+	}
+
+	private static final class Compiler {
+		private final SimpleIntDfa dfa;
+		private final int states;
+
+		private int[] table;
+		private int nodes;
+
+		// nodes that lead to one state whatever the next bytes are by (state, bytes left, first byte, last byte)
+		private final Map<Long, Integer> constants = new HashMap<>();
+
+		// targets of the current state by code point: starts[i] ..< starts[i + 1] leads to targets[i]
+		private int[] starts = new int[16];
+		private int[] targets = new int[16];
+		private int pieces;
+
+		Compiler(SimpleIntDfa dfa) {
+			this.dfa = dfa;
+			this.states = IntDfaOperations.explore(dfa);
+			this.table = new int[Math.max(16, states * 2) << 8];
+			this.nodes = states;
+			Arrays.fill(table, 0, states << 8, -1);
+		}
+
+		Utf8Dfa compile() {
+			for (int state = 0; state < states; state++) {
+				targetsByCodePoint(state);
+				for (int b = 0; b < 0x80; b++) {
+					table[state << 8 | b] = targetOf(b);
+				}
+				// lead bytes of 2, 3 and 4 byte sequences, the rest is invalid
+				for (int b = 0xC2; b <= 0xDF; b++) {
+					connect(state, b, node(b & 0x1F, 1, 2));
+				}
+				for (int b = 0xE0; b <= 0xEF; b++) {
+					connect(state, b, node(b & 0x0F, 2, 3));
+				}
+				for (int b = 0xF0; b <= 0xF4; b++) {
+					connect(state, b, node(b & 0x07, 3, 4));
+				}
+			}
+
+			final long[] accepting = new long[(states + 63) >>> 6];
+			for (int state = 0; state < states; state++) {
+				if (dfa.accepts(state)) {
+					accepting[state >>> 6] |= 1L << state;
+				}
+			}
+			return compress(accepting);
+		}
+
+		// merges the columns of bytes that have the same target from every node
+		private Utf8Dfa compress(long[] accepting) {
+			final long[] hashes = new long[256];
+			for (int node = 0; node < nodes; node++) {
+				for (int b = 0; b < 256; b++) {
+					hashes[b] = (hashes[b] + table[node << 8 | b] + 1) * 0x9E3779B97F4A7C15L;
+				}
+			}
+
+			// first byte of each class and the class of each byte
+			final int[] firsts = new int[256];
+			final int[] byteClasses = new int[256];
+			int classes = 0;
+			for (int b = 0; b < 256; b++) {
+				int k = 0;
+				while (k < classes && !(hashes[firsts[k]] == hashes[b] && sameColumn(firsts[k], b))) k++;
+				if (k == classes) {
+					firsts[classes++] = b;
+				}
+				byteClasses[b] = k;
+			}
+
+			final int[] compact = new int[nodes * classes];
+			for (int node = 0; node < nodes; node++) {
+				for (int k = 0; k < classes; k++) {
+					compact[node * classes + k] = table[node << 8 | firsts[k]];
+				}
+			}
+			return new Utf8Dfa(states, nodes, classes, byteClasses, compact, accepting);
+		}
+
+		private boolean sameColumn(int a, int b) {
+			for (int node = 0; node < nodes; node++) {
+				if (table[node << 8 | a] != table[node << 8 | b]) return false;
+			}
+			return true;
+		}
+
+		// node after the bytes of prefix when left more continuation bytes follow in a sequence of length bytes
+		private int node(int prefix, int left, int length) {
+			int first = -1;
+			int last = -1;
+			for (int c = 0; c < 64; c++) {
+				if (valid(prefix << 6 | c, left - 1, length)) {
+					if (first == -1) first = c;
+					last = c;
+				}
+			}
+			if (first == -1) return -1;
+
+			final int from = (prefix << 6 | first) << (6 * (left - 1));
+			final int to = ((prefix << 6 | last) + 1) << (6 * (left - 1));
+			final int constant = constantTarget(from, to);
+			if (constant != -2) {
+				return constantNode(constant, left, 0x80 | first, 0x80 | last);
+			}
+
+			final int node = newNode();
+			for (int c = first; c <= last; c++) {
+				final int child = prefix << 6 | c;
+				connect(node, 0x80 | c, (left == 1) ? targetOf(child) : node(child, left - 1, length));
+			}
+			return node;
+		}
+
+		// node reading left continuation bytes from first to last, then any continuation bytes, then state
+		private int constantNode(int state, int left, int first, int last) {
+			if (state == -1) return -1;
+			final long key = (long) state << 32 | left << 16 | first << 8 | last;
+			final Integer known = constants.get(key);
+			if (known != null) return known;
+
+			final int child = (left == 1) ? state : constantNode(state, left - 1, 0x80, 0xBF);
+			final int node = newNode();
+			for (int b = first; b <= last; b++) {
+				table[node << 8 | b] = child;
+			}
+			constants.put(key, node);
+			return node;
+		}
+
+		// true iff the code points starting with prefix are valid in a sequence of length bytes
+		private static boolean valid(int prefix, int left, int length) {
+			final int from = prefix << (6 * left);
+			final int to = from + (1 << (6 * left)) - 1;
+			switch (length) {
+				case 2: return from >= 0x80;
+				case 3: return from >= 0x800 && (to < MIN_SURROGATE || from > MAX_SURROGATE);
+				default: return from >= 0x10000 && to <= Character.MAX_CODE_POINT;
+			}
+		}
+
+		// the table may be replaced while the target is computed, so it is read after that
+		private void connect(int node, int b, int target) {
+			table[node << 8 | b] = target;
+		}
+
+		private int newNode() {
+			if ((nodes + 1) << 8 > table.length) {
+				table = Arrays.copyOf(table, table.length * 2);
+			}
+			Arrays.fill(table, nodes << 8, (nodes + 1) << 8, -1);
+			return nodes++;
+		}
+
+		// target of code point in the current state
+		private int targetOf(int codePoint) {
+			int lo = 0;
+			int hi = pieces - 1;
+			while (lo < hi) {
+				final int mid = (lo + hi + 1) >>> 1;
+				if (starts[mid] <= codePoint) lo = mid;
+				else hi = mid - 1;
+			}
+			return targets[lo];
+		}
+
+		// target of all code points in from ..< to, or -2 when they differ
+		private int constantTarget(int from, int to) {
+			final int target = targetOf(from);
+			for (int i = 0; i < pieces; i++) {
+				if (starts[i] > from && starts[i] < to && targets[i] != target) return -2;
+			}
+			return target;
+		}
+
+		private void targetsByCodePoint(int state) {
+			pieces = 0;
+			final int any = dfa.step(state, ANY);
+			add(0, any);
+			final int labels = dfa.labels(state);
+			for (int n = 0; n < labels; n++) {
+				final char c = dfa.label(state, n);
+				if (n > 0 && c == dfa.label(state, n - 1)) continue; // the first of edges with the same label is kept
+				if (c != ANY && (c < MIN_SURROGATE || c > MAX_SURROGATE)) {
+					add(c, dfa.target(state, n));
+					add(c + 1, any);
+				}
+			}
+			// supplementary code points are above all chars
+			for (int n = 0; n < labels; n++) {
+				final char high = dfa.label(state, n);
+				if (high < MIN_SURROGATE || high > MAX_HIGH_SURROGATE || n > 0 && high == dfa.label(state, n - 1)) continue;
+
+				final int base = Character.toCodePoint(high, (char) MIN_LOW_SURROGATE);
+				final int next = dfa.target(state, n);
+				final int nextAny = dfa.step(next, ANY);
+				add(base, nextAny);
+				for (int i = 0, max = dfa.labels(next); i < max; i++) {
+					final char low = dfa.label(next, i);
+					if (Character.isLowSurrogate(low) && (i == 0 || low != dfa.label(next, i - 1))) {
+						add(base + low - MIN_LOW_SURROGATE, dfa.target(next, i));
+						add(base + low - MIN_LOW_SURROGATE + 1, nextAny);
+					}
+				}
+				add(base + (MAX_SURROGATE - MIN_LOW_SURROGATE + 1), any);
+			}
+		}
+
+		// code points from start lead to target, until the next piece. a piece at the same start is replaced.
+		private void add(int start, int target) {
+			if (pieces > 0 && starts[pieces - 1] == start) {
+				pieces--;
+			}
+			if (pieces > 0 && targets[pieces - 1] == target) {
+				return;
+			}
+			if (pieces == starts.length) {
+				starts = Arrays.copyOf(starts, pieces * 2);
+				targets = Arrays.copyOf(targets, pieces * 2);
+			}
+			starts[pieces] = start;
+			targets[pieces] = target;
+			pieces++;
+		}
+	}
+}
@@ -7,8 +7,20 @@ public final class WhitespacesDFA implements SimpleIntDfa {
 
 	public static final SimpleIntDfa INSTANCE = new WhitespacesDFA();
 
+	/**
+	 * Accepts words of any whitespace characters (Character.isWhitespace), not only spaces.
+	 */
+	public static final RangeIntDfa UNICODE = unicode();
+
 	private WhitespacesDFA() {}
 
+	private static RangeIntDfa unicode() {
+		final MutableRangeDFA dfa = new MutableRangeDFA();
+		dfa.connect(RangeIntDfa.START, Character::isWhitespace, RangeIntDfa.START);
+		dfa.accept(RangeIntDfa.START);
+		return dfa;
+	}
+
 	@Override
 	public int size() {
 		return 1;
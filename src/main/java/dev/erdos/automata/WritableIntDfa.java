@@ -45,4 +45,8 @@ public interface WritableIntDfa extends SimpleIntDfa {
 	default WritableIntDfa concat(SimpleIntDfa other) {
 		return new IntDfaOperations().concat(this, other);
 	}
+
+	default WritableIntDfa minimize() {
+		return new IntDfaOperations().minimize(this);
+	}
 }
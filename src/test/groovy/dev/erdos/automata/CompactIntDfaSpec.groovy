@@ -0,0 +1,43 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class CompactIntDfaSpec extends Specification {
+
+    def 'frozen automaton has same structure'() {
+        given:
+            def parent = NDFA.levenshtein('janos', 1).dfa()
+        when:
+            def frozen = parent.freeze()
+        then:
+            frozen.size() == parent.size()
+            (0..<parent.size()).every { state ->
+                frozen.accepts(state) == parent.accepts(state) &&
+                        frozen.labels(state) == parent.labels(state) &&
+                        (0..<parent.labels(state)).every { frozen.label(state, it) == parent.label(state, it) && frozen.target(state, it) == parent.target(state, it) }
+            }
+    }
+
+    def 'frozen automaton accepts same words'() {
+        given:
+            def frozen = NDFA.levenshtein('janos', 1).dfa().freeze()
+        expect:
+            ['janos', 'jano', 'xanos', 'anos', 'jaos', 'jnos', 'jjanos'].forEach { assert frozen.test(it) }
+            ['jan', 'ano', 'xxx', 'xano', 'ja', '', 'janosxy', 'jjjanos'].forEach { assert !frozen.test(it) }
+            frozen.freeze().is(frozen)
+    }
+
+    def 'duplicate edges are dropped'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            dfa.connect(0, 'a' as char, dfa.newState())
+            dfa.connect(0, 'a' as char, dfa.newState())
+            dfa.accept(1)
+        when:
+            def frozen = dfa.freeze()
+        then:
+            frozen.labels(0) == 1
+            frozen.test('a')
+            !frozen.test('b')
+    }
+}
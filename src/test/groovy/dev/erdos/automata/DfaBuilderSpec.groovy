@@ -0,0 +1,73 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import static dev.erdos.automata.SimpleIntDfa.ANY
+
+class DfaBuilderSpec extends Specification {
+
+    def 'edges are kept sorted and replaced'() {
+        given:
+            def builder = new DfaBuilder()
+            def states = (1..40).collect { builder.newState() }
+        when:
+            // enough edges to move the region of the start state a few times
+            ('z'..'a').each { builder.connect(0, it as char, states[it as char - ('a' as char)]) }
+            builder.connect(0, ANY, states[39])
+            builder.connect(0, 'c' as char, states[30])
+        then:
+            builder.labels(0) == 27
+            (0..<27).collect { builder.label(0, it) } == [ANY] + ('a'..'z').collect { it as char }
+            builder.step(0, 'c' as char) == states[30]
+            builder.step(0, 'q' as char) == states['q' as char - ('a' as char)]
+            builder.step(0, '!' as char) == -1
+            builder.labels(states[0]) == 0
+    }
+
+    def 'copied edges do not change with the original'() {
+        given:
+            def builder = new DfaBuilder()
+            def a = builder.newState()
+            builder.connect(0, 'a' as char, a)
+        when:
+            def copy = builder.copyWithOutgoingEdges(0)
+            builder.connect(0, 'b' as char, a)
+            builder.connect(copy, 'c' as char, a)
+        then:
+            builder.labels(0) == 2
+            builder.labels(copy) == 2
+            builder.step(copy, 'b' as char) == -1
+            builder.step(copy, 'c' as char) == a
+    }
+
+    def 'powerset construction into builder'() {
+        given:
+            def ndfa = NDFA.levenshtein('janos', 1)
+            def expected = ndfa.dfa()
+        when:
+            def built = ndfa.dfa(new DfaBuilder()).build()
+        then:
+            built.size() == expected.size()
+            ['janos', 'jano', 'xanos', 'jnos', 'janoss', 'jaxxs', '', 'erdos'].every { built.test(it) == expected.test(it) }
+    }
+
+    def 'operations work on builder'() {
+        given:
+            def ops = new IntDfaOperations()
+            def builder = NDFA.levenshtein('janos', 0).dfa(new DfaBuilder())
+        when:
+            ops.union(builder, NDFA.levenshtein('erdos', 0).dfa())
+            ops.concat(builder, NDFA.levenshtein('!', 0).dfa())
+            def built = builder.build()
+        then:
+            built.test('janos!')
+            built.test('erdos!')
+            !built.test('janos')
+            built.size() == builder.size()
+        when:
+            def product = ops.materialize(ops.intersect(built, NDFA.levenshtein('janos!', 1).dfa()), new DfaBuilder())
+        then:
+            product.test('janos!')
+            !product.test('erdos!')
+    }
+}
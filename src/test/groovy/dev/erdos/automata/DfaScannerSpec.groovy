@@ -0,0 +1,83 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import static dev.erdos.automata.DfaScanner.Policy.LEFTMOST_LONGEST
+import static dev.erdos.automata.DfaScanner.Policy.OVERLAPPING
+
+class DfaScannerSpec extends Specification {
+
+    static SimpleIntDfa words(String... words) {
+        def operations = new IntDfaOperations()
+        def dfa = NDFA.levenshtein(words[0], 0).dfa()
+        words.each { dfa = operations.union(dfa, NDFA.levenshtein(it, 0).dfa()) }
+        dfa
+    }
+
+    static List<List<Long>> matches(DfaScanner scanner, String text) {
+        def result = []
+        scanner.scan(text, { s, e -> result << [s, e] } as DfaScanner.MatchConsumer)
+        result
+    }
+
+    def 'leftmost longest matches do not overlap'() {
+        given:
+            def scanner = new DfaScanner(words('ab', 'abcd', 'bc', 'c'), LEFTMOST_LONGEST)
+        expect:
+            matches(scanner, text) == expected
+        where:
+            text       | expected
+            ''         | []
+            'xx'       | []
+            'abcd'     | [[0, 4]]
+            'abcx'     | [[0, 2], [2, 3]]
+            'xbcabc'   | [[1, 3], [3, 5], [5, 6]]
+            'abcabcd'  | [[0, 2], [2, 3], [3, 7]]
+    }
+
+    def 'analyzed automaton reports same matches'() {
+        given:
+            def dfa = new IntDfaOperations().materialize(new ProductIntDfa(words('ab', 'abcd'), words('abxy'), ProductIntDfa.Operation.UNION))
+        expect:
+            matches(new DfaScanner(dfa.analyze(), LEFTMOST_LONGEST), text) == matches(new DfaScanner(dfa, LEFTMOST_LONGEST), text)
+        where:
+            text << ['', 'abcd', 'abcabx', 'xabxyab', 'ababcd']
+    }
+
+    def 'overlapping reports leftmost start of each end'() {
+        given:
+            def scanner = new DfaScanner(words('ab', 'abcd', 'bc', 'c'), OVERLAPPING)
+        expect:
+            matches(scanner, 'abcd') == [[0, 2], [1, 3], [0, 4]]
+    }
+
+    def 'matches are found with fuzzy automaton'() {
+        given:
+            def scanner = new DfaScanner(NDFA.levenshtein('erdos', 1).dfa(), LEFTMOST_LONGEST)
+        expect:
+            matches(scanner, 'paul erdoss and erdo') == [[4, 10], [16, 20]]
+    }
+
+    def 'reader and mapped file give same matches'() {
+        given:
+            def text = ('árvíztűrő abcd ' * 2000) + 'bc'
+            def scanner = new DfaScanner(words('ab', 'abcd', 'bc', 'tűrő'), LEFTMOST_LONGEST)
+            def file = Files.createTempFile('scanner', '.txt')
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8))
+            def fromReader = []
+            def fromFile = []
+        when:
+            scanner.scan(new StringReader(text), { s, e -> fromReader << [s, e] } as DfaScanner.MatchConsumer)
+            scanner.scan(file, StandardCharsets.UTF_8, { s, e -> fromFile << [s, e] } as DfaScanner.MatchConsumer)
+        then:
+            fromReader == matches(scanner, text)
+            fromFile == fromReader
+            fromFile.size() == 4001
+            fromFile.last() == [(long) text.length() - 2, (long) text.length()]
+        cleanup:
+            Files.deleteIfExists(file)
+    }
+}
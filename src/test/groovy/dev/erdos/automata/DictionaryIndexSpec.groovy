@@ -0,0 +1,65 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class DictionaryIndexSpec extends Specification {
+
+    def 'index is minimal'() {
+        when:
+            def index = DictionaryIndex.of(['tap', 'taps', 'top', 'tops'])
+        then:
+            index.size() == 4
+            index.automaton().size() == 5
+            ['tap', 'taps', 'top', 'tops'].every { index.contains(it) }
+            !index.contains('ta')
+            !index.contains('tapss')
+    }
+
+    def 'duplicates and empty term'() {
+        when:
+            def index = DictionaryIndex.of(['', 'a', 'a', 'ab'])
+        then:
+            index.size() == 3
+            index.contains('')
+            index.contains('ab')
+            !index.contains('b')
+    }
+
+    def 'terms must be sorted'() {
+        when:
+            DictionaryIndex.of(['janos', 'erdos'])
+        then:
+            thrown(IllegalArgumentException)
+    }
+
+    def 'search finds same terms as testing every term'() {
+        given:
+            def terms = ['abraham', 'anos', 'braham', 'erdei', 'erdos', 'jan', 'jano', 'janos', 'jaxxs', 'jjanos', 'xanos', 'zeta']
+            def index = DictionaryIndex.of(terms)
+            def query = NDFA.levenshtein('janos', 1).dfa()
+        expect:
+            index.search(query) == terms.findAll { query.test(it) }
+            index.search(query) == ['anos', 'jano', 'janos', 'jjanos', 'xanos']
+    }
+
+    def 'search with analyzed query'() {
+        given:
+            def terms = ['jaguar', 'jam', 'janos', 'jj', 'xanos', 'xx']
+            def index = DictionaryIndex.of(terms)
+        expect:
+            index.search(StateAnalysisSpec.prefixQuery().analyze()) == ['jaguar', 'jam', 'janos']
+            index.search(NDFA.levenshtein('janos', 1).dfa().analyze()) == ['janos', 'xanos']
+            index.search(new MutableArrayDFA().analyze()) == []
+    }
+
+    def 'search with wildcard query'() {
+        given:
+            def index = DictionaryIndex.of(['aa', 'ab', 'b', 'ba'])
+            def query = new MutableArrayDFA()
+            query.connect(0, 'a' as char, query.newState())
+            query.connect(1, SimpleIntDfa.ANY, query.newState())
+            query.accept(2)
+        expect:
+            index.search(query) == ['aa', 'ab']
+    }
+}
@@ -0,0 +1,49 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class GraphSpec extends Specification {
+
+    def 'long traversal visits every item once in breadth first order'() {
+        given:
+            def visited = []
+        when:
+            // children of n are 2n and 2n + 1 below 16, and 0 from everywhere
+            Graph.breadthFirstTraversal(1L, { long item, children ->
+                visited << item
+                children.accept(0L)
+                if (2 * item < 16) {
+                    children.accept(2 * item)
+                    children.accept(2 * item + 1)
+                }
+            } as Graph.LongStep)
+        then:
+            visited == [1L, 0L, 2L, 3L] + (4L..15L)
+    }
+
+    def 'long set and queue grow'() {
+        given:
+            def set = new Graph.LongSet()
+            def queue = new Graph.LongQueue()
+            def items = (-500L..500L).collect { it << 32 | it & 0xFFFF }
+        when:
+            items.each { assert set.add(it); queue.add(it) }
+        then:
+            items.every { !set.add(it) && set.contains(it) }
+            !set.contains(1L << 40)
+            items.every { queue.remove() == it }
+            queue.isEmpty()
+    }
+
+    def 'queue keeps order when it grows after wrapping around'() {
+        given:
+            def queue = new Graph.LongQueue()
+        when:
+            (0L..<10L).each { queue.add(it) }
+            def removed = (0..<5).collect { queue.remove() }
+            (10L..<100L).each { queue.add(it) }
+            while (!queue.isEmpty()) removed << queue.remove()
+        then:
+            removed == (0L..<100L).toList()
+    }
+}
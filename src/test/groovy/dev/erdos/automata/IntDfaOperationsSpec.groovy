@@ -107,6 +107,22 @@ class IntDfaOperationsSpec extends Specification {
             word.size() == 13
     }
 
+    def 'bulk operations trim the result'() {
+        given:
+            def ops = new IntDfaOperations()
+            def nothing = new MutableArrayDFA()
+        when:
+            def union = ops.unionAll(NDFA.levenshtein('janos', 0).dfa(), ['erdos', 'erdei'].collect { NDFA.levenshtein(it, 0).dfa() })
+        then:
+            union.size() == 13
+            ['janos', 'erdos', 'erdei'].every { union.test(it) }
+        when:
+            def concat = ops.concatAll(NDFA.levenshtein('ab', 0).dfa(), [NDFA.levenshtein('c', 0).dfa(), nothing])
+        then:
+            concat.size() == 1
+            !concat.test('abc')
+    }
+
     def 'union 1'() {
         setup:
             def aaa = new MutableArrayDFA()
@@ -209,4 +225,132 @@ class IntDfaOperationsSpec extends Specification {
             ! word.test('hallo')
             ! word.test('world')
     }
+
+    def 'minimize keeps language'() {
+        given:
+            def word = NDFA.levenshtein('abcdefghijklmnopqrst', 2).dfa()
+        when:
+            def minimal = new IntDfaOperations().minimize(word)
+        then:
+            minimal.size() <= word.size()
+            new IntDfaOperations().minimize(minimal).size() == minimal.size()
+            ['abcdefghijklmnopqrst', 'abcdefghijklmnopqr', 'xbcdefghijklmnopqrsx', 'abcdefghijklmnopqrstuv', 'bcdefghijklmnopqrst', ''].forEach {
+                assert minimal.test(it) == word.test(it)
+            }
+    }
+
+    def 'minimize after union of equal automata'() {
+        given:
+            def word = NDFA.levenshtein('janos', 1).dfa()
+            def minimal = new IntDfaOperations().minimize(word)
+        when:
+            new IntDfaOperations().union(word, NDFA.levenshtein('janos', 1).dfa())
+        then:
+            new IntDfaOperations().minimize(word).size() == minimal.size()
+    }
+
+    def 'minimize merges equivalent states'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            4.times { dfa.newState() }
+            dfa.connect(0, 'a' as char, 1)
+            dfa.connect(0, 'b' as char, 2)
+            dfa.connect(1, 'x' as char, 3)
+            dfa.connect(2, 'x' as char, 4)
+            dfa.accept(3)
+            dfa.accept(4)
+        expect:
+            dfa.minimize().size() == 3
+    }
+
+    def 'minimize keeps labels of accepting states'() {
+        given:
+            def dfa = new MutableArrayDFA<String>()
+            2.times { dfa.newState() }
+            dfa.connect(0, 'a' as char, 1)
+            dfa.connect(0, 'b' as char, 2)
+            dfa.accept(1, 'first')
+            dfa.accept(2, 'second')
+        when:
+            def minimal = new IntDfaOperations().<String> minimize(dfa)
+        then:
+            minimal.size() == 3
+            minimal.values(minimal.parse('a')) == ['first']
+            minimal.values(minimal.parse('b')) == ['second']
+    }
+
+    def 'minimize empty language'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            dfa.connect(0, 'a' as char, dfa.newState())
+        expect:
+            dfa.minimize().size() == 1
+            !dfa.minimize().test('a')
+    }
+
+    def 'intersect and minus with levenshtein automata'() {
+        given:
+            def operations = new IntDfaOperations()
+            def near = NDFA.levenshtein('janos', 2).dfa()
+            def blocked = NDFA.levenshtein('janis', 0).dfa()
+        when:
+            def intersection = operations.intersect(near, NDFA.levenshtein('jonas', 1).dfa())
+            def difference = operations.minus(near, blocked)
+        then:
+            ['jonas', 'janas', 'jonos', 'jnas'].every { intersection.test(it) }
+            ['janos', 'jonasxx', 'xyz'].every { !intersection.test(it) }
+            ['janos', 'janus', 'jani'].every { difference.test(it) }
+            !difference.test('janis')
+            !difference.test('xyzzy')
+    }
+
+    def 'complement handles any edges'() {
+        given:
+            def complement = new IntDfaOperations().complement(NDFA.levenshtein('ab', 1).dfa())
+        expect:
+            complement.test(word) == expected
+        where:
+            word   | expected
+            ''     | true
+            'a'    | false
+            'ab'   | false
+            'xb'   | false
+            'abc'  | false
+            'xy'   | true
+            'abcd' | true
+            'zzz'  | true
+    }
+
+    def 'materialized product has reachable states only'() {
+        given:
+            def operations = new IntDfaOperations()
+            def product = operations.intersect(NDFA.levenshtein('erdos', 1).dfa(), NDFA.levenshtein('erdos', 0).dfa())
+        when:
+            def copy = operations.materialize(product)
+        then:
+            copy.test('erdos')
+            !copy.test('erdo')
+            !copy.test('erdosz')
+            copy.size() == product.size()
+            copy.size() <= 7 // path of 'erdos' and the sink
+    }
+
+    def 'lazy products are explored before they are copied'() {
+        given:
+            def ops = new IntDfaOperations()
+            def c = NDFA.levenshtein('c', 0).dfa()
+            def empty = NDFA.levenshtein('', 0).dfa()
+            def janos = NDFA.levenshtein('janos', 1).dfa()
+            def erdos = NDFA.levenshtein('erdos', 2).dfa()
+        expect:
+            ops.minimize(ops.minus(c, empty)).test('c')
+            [{ ops.intersect(janos, erdos) }, { ops.minus(janos, erdos) }, { ops.minus(erdos, janos) }, { ops.complement(janos) }].every { lazy ->
+                def reference = ops.materialize(lazy())
+                // a fresh product for each copy, so every copy starts from an unexplored one
+                def copies = [ops.minimize(lazy()), lazy().freeze(), TableIntDfa.of(lazy()), new MutableArrayDFA(lazy())]
+                ['', 'janos', 'jonas', 'erdos', 'ernos', 'jaos', 'janosz', 'xerdosx', 'edos'].every { word ->
+                    copies.every { it.test(word) == reference.test(word) }
+                }
+            }
+    }
 }
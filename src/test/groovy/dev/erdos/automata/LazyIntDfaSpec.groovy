@@ -0,0 +1,52 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LazyIntDfaSpec extends Specification {
+
+    @Unroll
+    def 'lazy dfa with budget #budget agrees with dfa'() {
+        given:
+            def ndfa = NDFA.levenshtein('abraham', 2)
+            def dfa = ndfa.dfa()
+            def lazy = ndfa.lazyDfa(budget)
+        expect:
+            ['abraham', 'braham', 'abraha', 'abrah', 'xxabraham', 'xabrahamx', 'araha', 'aabraham', '', 'abra', 'brah', 'abrahamabraham'].forEach {
+                assert lazy.test(it) == dfa.test(it)
+            }
+        where:
+            budget << [0, 1_000, 1_000_000]
+    }
+
+    def 'states are only created when reached'() {
+        given:
+            def ndfa = NDFA.levenshtein('abcdefghijklmnopqrst', 2)
+            def lazy = ndfa.lazyDfa(1_000_000)
+        when:
+            lazy.test('abcdefghijklmnopqrst')
+        then:
+            lazy.size() < ndfa.dfa().size()
+            lazy.resets() == 0
+    }
+
+    def 'cache is reset when budget is exceeded'() {
+        given:
+            def lazy = NDFA.levenshtein('abcdefghijklmnopqrst', 2).lazyDfa(0)
+        expect:
+            lazy.test('abcdefghijklmnopqrst')
+            lazy.resets() > 0
+            lazy.size() <= 2
+            lazy.test('abcdefghijklmnopqrst')
+    }
+
+    def 'edges match the dfa'() {
+        given:
+            def ndfa = NDFA.levenshtein('janos', 1)
+            def dfa = ndfa.dfa()
+            def lazy = ndfa.lazyDfa(1_000_000)
+        expect:
+            lazy.labels(0) == dfa.labels(0)
+            (0..<dfa.labels(0)).every { lazy.label(0, it) == dfa.label(0, it) }
+    }
+}
@@ -14,6 +14,40 @@ class LevenshteinDFASpec extends Specification {
             !uniqueLetters('abcdaefgh')
             !uniqueLetters('abcdabcd')
             !uniqueLetters('aa')
+            // same bucket of the quick check
+            uniqueLetters('a\u00a1')
+            !uniqueLetters('a\u00a1a')
+    }
+
+    def 'words with the same letter pattern share a template'() {
+        given:
+            def cache = new LevenshteinDFA(1)
+        when:
+            def first = cache.cached('abca')
+            def second = cache.cached('xyzx')
+            def other = cache.cached('xyzz')
+        then:
+            cache.cacheMisses() == 2
+            cache.cacheHits() == 1
+            cache.uniqueWords() == 0
+            first.test('abca') && first.test('bca') && !first.test('xyzx')
+            second.test('xyzx') && second.test('xyz') && second.test('xxyzx') && !second.test('xyxy') && !second.test('abca')
+            other.test('xyzz') && other.test('xzz') && !other.test('xyxy')
+    }
+
+    def 'cache stays below its memory budget'() {
+        given:
+            def cache = new LevenshteinDFA(2, budget)
+        when:
+            ['abc', 'abcd', 'abcde', 'abcdef', 'abc'].each { cache.cached(it) }
+        then:
+            cache.cacheBytes() <= budget
+            cache.cacheMisses() == misses
+            cache.cacheHits() == 5 - misses
+        where:
+            budget  | misses
+            0       | 5
+            1 << 20 | 4
     }
 
     def 'cached isomorphic dfa has same complexity'() {
@@ -28,6 +62,36 @@ class LevenshteinDFASpec extends Specification {
         'jaxyz' | false
     }
 
+    def 'cached view accepts the words of the built automaton'() {
+        given:
+            def cache = new LevenshteinDFA(1)
+            cache.cached('zyx')
+            def view = cache.cached(word)
+            def built = NDFA.levenshtein(word, 1).dfa()
+            def words = ['', word, word.reverse(), word + 'q', 'q' + word, word.substring(1), 'xyz', 'qrs', 'zx', 'zzyx']
+        expect:
+            view.size() == built.size()
+            words.every { view.test(it) == built.test(it) }
+            // renamed labels are still in ascending order and lead where step() does
+            (0..<view.size()).every { s ->
+                def labels = (0..<view.labels(s)).collect { view.label(s, it) }
+                labels == labels.sort(false) && (0..<labels.size()).every { view.target(s, it) == view.step(s, labels[it]) }
+            }
+        where:
+            word << ['zyx', 'bca', 'z\u00e1b']
+    }
+
+    def 'words with many distinct letters are built directly'() {
+        given:
+            def cache = new LevenshteinDFA(0)
+            def word = (0..<900).collect { (char) (0x4E00 + it) }.join()
+            def dfa = cache.cached(word)
+        expect:
+            dfa.test(word)
+            !dfa.test(word.substring(1))
+            cache.cacheMisses() == 0
+    }
+
     def 'see runtime of cached levenshtein builder'() {
         expect:
         def cache = new LevenshteinDFA(2)
@@ -44,4 +108,26 @@ class LevenshteinDFASpec extends Specification {
             System.out.println("Elapsed: ${mid - before}us vs ${after - mid}us")
         }
     }
+
+    def 'cache can be shared between threads'() {
+        given:
+            def cache = new LevenshteinDFA(1)
+            def words = ['janos', 'erdos', 'abcde', 'vwxyz']
+            def pool = java.util.concurrent.Executors.newFixedThreadPool(8)
+        when:
+            def futures = (1..64).collect { i ->
+                pool.submit({
+                    def word = words[i % words.size()]
+                    def dfa = cache.cached(word)
+                    dfa.test(word) && dfa.test('x' + word.substring(1)) && !dfa.test(word.reverse() + 'xx')
+                } as java.util.concurrent.Callable)
+            }
+        then:
+            futures.every { it.get() }
+            cache.cacheMisses() == 1
+            cache.cacheHits() == 63
+            cache.uniqueWords() == 64
+        cleanup:
+            pool.shutdown()
+    }
 }
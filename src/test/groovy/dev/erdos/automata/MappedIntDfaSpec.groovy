@@ -0,0 +1,61 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MappedIntDfaSpec extends Specification {
+
+    Path file = Files.createTempFile('automaton', '.dfa')
+
+    def cleanup() {
+        Files.deleteIfExists(file)
+    }
+
+    def 'loaded automaton has same structure'() {
+        given:
+            def parent = NDFA.levenshtein('janos', 2).dfa()
+        when:
+            MappedIntDfa.write(parent, file)
+            def loaded = MappedIntDfa.load(file)
+        then:
+            loaded.size() == parent.size()
+            (0..<parent.size()).every { state ->
+                loaded.accepts(state) == parent.accepts(state) &&
+                        loaded.labels(state) == parent.labels(state) &&
+                        (0..<parent.labels(state)).every { loaded.label(state, it) == parent.label(state, it) && loaded.target(state, it) == parent.target(state, it) }
+            }
+            !loaded.accepts(-1)
+    }
+
+    def 'loaded automaton accepts same words'() {
+        given:
+            def union = new IntDfaOperations().union(NDFA.levenshtein('janos', 1).dfa(), NDFA.levenshtein('erdős', 1).dfa())
+            MappedIntDfa.write(union, file)
+            def loaded = MappedIntDfa.load(file)
+        expect:
+            ['janos', 'jano', 'xanos', 'erdős', 'erdos', 'rdős'].forEach { assert loaded.test(it) }
+            ['jan', 'xxx', 'erd', '', 'janosxy'].forEach { assert !loaded.test(it) }
+    }
+
+    def 'invalid files are rejected'() {
+        given:
+            MappedIntDfa.write(NDFA.levenshtein('janos', 1).dfa(), file)
+            def bytes = Files.readAllBytes(file)
+        when:
+            MappedIntDfa.of(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1)))
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            bytes[4] = 2
+            MappedIntDfa.of(ByteBuffer.wrap(bytes))
+        then:
+            thrown(IllegalArgumentException)
+        when:
+            MappedIntDfa.of(ByteBuffer.wrap('not a dfa file'.bytes))
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
@@ -14,4 +14,44 @@ class MutableArrayDFASpec extends Specification {
             ['janos', 'jano', 'xanos', 'anos', 'jaos', 'jnos'].forEach { assert created.test(it) }
             !['jan', 'ano', 'xxx', 'xano', 'ja', '', 'janosxy'].forEach { assert ! created.test(it) }
     }
+
+    def 'trim removes unreachable and dead states'() {
+        given:
+            def dfa = new MutableArrayDFA<String>()
+            def a = dfa.newState()
+            def dead = dfa.newState()
+            def unreachable = dfa.newState()
+            def b = dfa.newState()
+            dfa.connect(0, 'a' as char, a)
+            dfa.connect(0, 'x' as char, dead)
+            dfa.connect(a, 'b' as char, b)
+            dfa.connect(dead, 'y' as char, dead)
+            dfa.connect(unreachable, 'b' as char, b)
+            dfa.accept(b, 'ab')
+        when:
+            dfa.trim()
+        then:
+            dfa.size() == 3
+            dfa.test('ab')
+            !dfa.test('x')
+            dfa.values(dfa.parse('ab')) == ['ab']
+            (0..<dfa.size()).every { s -> (0..<dfa.labels(s)).every { dfa.target(s, it) < dfa.size() } }
+    }
+
+    def 'trim keeps letters away from star'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            def any = dfa.newState()
+            def dead = dfa.newState()
+            dfa.connect(0, SimpleIntDfa.ANY, any)
+            dfa.connect(0, 'x' as char, dead)
+            dfa.accept(any)
+        when:
+            dfa.trim()
+        then:
+            dfa.size() == 3 // start, '*' and a sink for 'x'
+            dfa.test('a')
+            !dfa.test('x')
+            !dfa.test('xa')
+    }
 }
@@ -54,4 +54,15 @@ class NDFATest extends Specification {
 			automata.alphabet() == ['a', 'b', 'h', 'm', 'r'] as Set<Character>
 			automata.size() == 8
 	}
+
+	@Unroll
+	def 'simulation of large automata agrees with dfa for #word'() {
+		expect:
+			def automata = NDFA.levenshtein('abcdefghijklmnopqrstuvwxyz', 2)
+			automata.size() > 64
+			automata.test(word) == automata.dfa().test(word)
+		where:
+			word << ['abcdefghijklmnopqrstuvwxyz', 'abcdefghijklmnopqrstuvw', 'xbcdefghijklmnopqrstuvwxyx',
+					 'abcdefghijklmnopqrstuvwxyzab', 'abcdefghijklmnopqrstuvwxyzabc', 'bdefghijklmnopqrstuvwxyz', '']
+	}
 }
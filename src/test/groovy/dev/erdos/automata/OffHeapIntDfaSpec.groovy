@@ -0,0 +1,73 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class OffHeapIntDfaSpec extends Specification {
+
+    def 'copy has same edges as the source'() {
+        given:
+            def source = NDFA.levenshtein('janos', 2).dfa()
+            def copy = OffHeapIntDfa.of(source, segmentBits)
+        expect:
+            copy.size() == source.size()
+            (0..<source.size()).every { s ->
+                copy.accepts(s) == source.accepts(s) && copy.labels(s) == source.labels(s) &&
+                    (0..<source.labels(s)).every { copy.label(s, it) == source.label(s, it) && copy.target(s, it) == source.target(s, it) }
+            }
+            ['', 'janos', 'jaxxs', 'erdos', 'jnos', 'xjanosx', 'janosxyz'].every { copy.test(it) == source.test(it) }
+        cleanup:
+            copy.close()
+        where:
+            // tiny segments so that every array is split
+            segmentBits << [3, 4, 30]
+    }
+
+    def 'duplicate labels keep the first edge'() {
+        given:
+            def source = new MutableArrayDFA()
+            (1..4).each { source.newState() }
+            source.connect(0, 'b' as char, 4)
+            source.connect(0, 'a' as char, 1)
+            source.connect(0, 'a' as char, 2)
+            source.connect(0, 'a' as char, 3)
+            source.accept(1)
+            def copy = OffHeapIntDfa.of(source)
+        expect:
+            copy.labels(0) == 2
+            copy.label(0, 0) == 'a' as char
+            copy.test('a')
+            !copy.test('b')
+        cleanup:
+            copy.close()
+    }
+
+    def 'closed automaton can not be used'() {
+        given:
+            def dfa = OffHeapIntDfa.of(NDFA.levenshtein('janos', 1).dfa())
+        when:
+            dfa.close()
+            dfa.close()
+            dfa.test('janos')
+        then:
+            dfa.isClosed()
+            thrown(IllegalStateException)
+    }
+
+    def 'concurrent readers'() {
+        given:
+            def dfa = OffHeapIntDfa.of(NDFA.levenshtein('janos', 1).dfa(), 4)
+            def pool = Executors.newFixedThreadPool(8)
+        when:
+            def futures = (1..64).collect {
+                pool.submit({ (1..100).every { dfa.test('janos') && dfa.test('jano') && !dfa.test('erdos') } } as Callable)
+            }
+        then:
+            futures.every { it.get() }
+        cleanup:
+            pool.shutdown()
+            dfa.close()
+    }
+}
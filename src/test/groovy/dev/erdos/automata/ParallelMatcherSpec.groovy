@@ -0,0 +1,37 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import java.util.concurrent.ForkJoinPool
+
+class ParallelMatcherSpec extends Specification {
+
+    def dfa = NDFA.levenshtein('erdos', 1).dfa().freeze()
+
+    def 'batch result is same as testing one by one'() {
+        given:
+            def random = new Random(1)
+            def words = (0..<20000).collect { (0..<random.nextInt(7)).collect { 'erdosx'[random.nextInt(6)] }.join() }
+            def expected = new BitSet()
+            words.eachWithIndex { word, i -> if (dfa.test(word)) expected.set(i) }
+            def pool = new ForkJoinPool(4)
+            def matcher = new ParallelMatcher(dfa, pool)
+        expect:
+            !expected.isEmpty()
+            matcher.test(words) == expected
+            matcher.test(words as CharSequence[]) == expected
+            matcher.test(words.stream()) == expected
+            matcher.test(new LinkedList(words)) == expected
+            matcher.parse(words) == words.collect { dfa.parse(it) } as int[]
+        cleanup:
+            pool.shutdown()
+    }
+
+    def 'empty batch'() {
+        given:
+            def matcher = new ParallelMatcher(dfa)
+        expect:
+            matcher.test([]).isEmpty()
+            matcher.parse([]).length == 0
+    }
+}
@@ -0,0 +1,100 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class PatternSetSpec extends Specification {
+
+    def 'matches returns values of all matching patterns'() {
+        given:
+            def patterns = PatternSet.<Integer> builder()
+                    .add(NDFA.levenshtein('janos', 1, 1))
+                    .add(NDFA.levenshtein('erdos', 1).dfa(), 2)
+                    .add('jonas', 3)
+                    .add(NDFA.levenshtein('jonas', 1, 4))
+                    .build()
+        expect:
+            patterns.matches(word) == expected as Set
+        where:
+            word     | expected
+            'janos'  | [1]
+            'erdos'  | [2]
+            'jonas'  | [3, 4]
+            'jonos'  | [1, 4]
+            'xyz'    | []
+            ''       | []
+    }
+
+    def 'automaton stays minimal'() {
+        given:
+            def builder = PatternSet.<String> builder()
+            ['tap', 'taps', 'top', 'tops'].each { builder.add(it, 'word') }
+        when:
+            def patterns = builder.build()
+        then:
+            patterns.automaton().size() == 5
+            patterns.matches('tops') == ['word'] as Set
+    }
+
+    def 'words are only merged with the same values'() {
+        given:
+            def builder = PatternSet.<String> builder()
+            ['taps', 'tops', 'tap', 'top'].each { builder.add(it, 'word') }
+            builder.add('tips', 'other')
+            builder.add('tap', 'tap')
+        when:
+            def patterns = builder.build()
+        then:
+            patterns.matches('tops') == ['word'] as Set
+            patterns.matches('tips') == ['other'] as Set
+            patterns.matches('tap') == ['word', 'tap'] as Set
+            patterns.matches('top') == ['word'] as Set
+            patterns.matches('tip').isEmpty()
+            patterns.automaton().size() == 10 // "tap" differs from "top", "tips" from "taps"
+    }
+
+    def 'many words and automata'() {
+        given:
+            def random = new Random(1)
+            def words = (0..<2000).collect { (0..<(1 + random.nextInt(6))).collect { 'abcdef'[random.nextInt(6)] }.join() }
+            def builder = PatternSet.<Integer> builder()
+            words.eachWithIndex { word, i -> builder.add(word, i % 3) }
+            builder.add(NDFA.levenshtein('abcabc', 1, 3))
+        when:
+            def patterns = builder.build()
+        then:
+            words.every { word ->
+                def expected = words.findIndexValues { it == word }.collect { (int) it % 3 } as Set
+                if (NDFA.levenshtein('abcabc', 1).test(word)) expected << 3
+                patterns.matches(word) == expected
+            }
+            patterns.matches('abcabcx') == [3] as Set
+            patterns.automaton().size() == new IntDfaOperations().minimize(patterns.automaton()).size()
+    }
+
+    def 'dfa of ndfa keeps labels'() {
+        given:
+            def ndfa = NDFA.levenshtein('abc', 1, 'x')
+        when:
+            def dfa = ndfa.dfa()
+        then:
+            dfa.values(dfa.parse('abc')) == ['x']
+            dfa.values(dfa.parse('ab')) == ['x']
+            dfa.values(dfa.parse('a')).isEmpty()
+    }
+
+    def 'union keeps labels of both sides'() {
+        given:
+            def left = NDFA.levenshtein('abc', 0, 'left').dfa()
+            def right = NDFA.levenshtein('abd', 0, 'right').dfa()
+        when:
+            new IntDfaOperations().union(left, right)
+        then:
+            left.values(left.parse('abc')) == ['left']
+            left.values(left.parse('abd')) == ['right']
+    }
+
+    def 'empty builder matches nothing'() {
+        expect:
+            PatternSet.builder().build().matches('') == [] as Set
+    }
+}
@@ -0,0 +1,118 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class RangeIntDfaSpec extends Specification {
+
+    // one or more letters, then digits
+    static MutableRangeDFA identifier() {
+        def dfa = new MutableRangeDFA()
+        def letters = dfa.newState()
+        def digits = dfa.newState()
+        dfa.connect(0, Character.&isLetter as java.util.function.IntPredicate, letters)
+        dfa.connect(letters, Character.&isLetter as java.util.function.IntPredicate, letters)
+        dfa.connect(letters, '0' as char, '9' as char, digits)
+        dfa.connect(digits, '0' as char, '9' as char, digits)
+        dfa.accept(letters)
+        dfa.accept(digits)
+        dfa
+    }
+
+    def 'character classes'() {
+        given:
+            def dfa = identifier()
+        expect:
+            dfa.test(word) == accepted
+            dfa.ranges(0) < 1000 // instead of tens of thousands of letters
+        where:
+            word      | accepted
+            'abc'     | true
+            'Erdős42' | true
+            'ηλιος'   | true
+            '中文'     | true
+            '42'      | false
+            'a4b'     | false
+            ''        | false
+    }
+
+    def 'adjacent ranges with same target are merged'() {
+        given:
+            def dfa = new MutableRangeDFA()
+            def a = dfa.newState()
+            def b = dfa.newState()
+        when:
+            dfa.connect(0, 'a' as char, 'c' as char, a)
+            dfa.connect(0, 'g' as char, 'k' as char, a)
+            dfa.connect(0, 'd' as char, 'f' as char, a)
+            dfa.connect(0, 'l' as char, 'l' as char, b)
+        then:
+            dfa.ranges(0) == 2
+            dfa.from(0, 0) == 'a' as char
+            dfa.to(0, 0) == 'k' as char
+            dfa.step(0, 'e' as char) == a
+            dfa.step(0, 'l' as char) == b
+            dfa.step(0, 'm' as char) == -1
+    }
+
+    def 'overlapping ranges are rejected'() {
+        given:
+            def dfa = new MutableRangeDFA()
+            dfa.connect(0, 'c' as char, 'f' as char, 0)
+        when:
+            dfa.connect(0, from as char, to as char, 0)
+        then:
+            thrown(IllegalArgumentException)
+        where:
+            from | to
+            'a'  | 'c'
+            'f'  | 'z'
+            'd'  | 'e'
+            'z'  | 'a'
+    }
+
+    def 'copy of char automaton'() {
+        given:
+            def dfa = NDFA.levenshtein('janos', 1).dfa()
+            def ranges = MutableRangeDFA.of(dfa)
+        expect:
+            ['janos', 'jano', 'xanos', 'jános', 'janos中', 'erdos', ''].every { ranges.test(it) == dfa.test(it) }
+            (0..<ranges.size()).every { ranges.ranges(it) <= 2 * dfa.labels(it) + 1 }
+    }
+
+    def 'copy keeps the first of edges with the same label'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            (1..4).each { dfa.newState() }
+            dfa.connect(0, 'a' as char, 1)
+            dfa.connect(0, 'a' as char, 2)
+            dfa.connect(0, 'a' as char, 3)
+            dfa.connect(0, 'b' as char, 4)
+            dfa.accept(1)
+            def ranges = MutableRangeDFA.of(dfa)
+        expect:
+            ranges.ranges(0) == 2
+            ranges.test('a')
+            !ranges.test('b')
+    }
+
+    def 'set operations over ranges'() {
+        given:
+            def ops = new IntDfaOperations()
+            def id = identifier()
+            def word = MutableRangeDFA.of(NDFA.levenshtein('janos', 1).dfa())
+        expect:
+            ops.intersect(id, word).test(w) == (id.test(w) && word.test(w))
+            ops.union(id, word).test(w) == (id.test(w) || word.test(w))
+            ops.minus(id, word).test(w) == (id.test(w) && !word.test(w))
+            ops.complement(id).test(w) == !id.test(w)
+        where:
+            w << ['janos', 'jan0s', 'janos1', 'erdos', '1anos', 'j', '']
+    }
+
+    def 'unicode whitespaces'() {
+        expect:
+            WhitespacesDFA.UNICODE.test('')
+            WhitespacesDFA.UNICODE.test(' \t\n ')
+            !WhitespacesDFA.UNICODE.test(' x ')
+    }
+}
@@ -0,0 +1,83 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import static dev.erdos.automata.SimpleIntDfa.ANY
+
+class StateAnalysisSpec extends Specification {
+
+    // 'ja' followed by anything, and a 'x' branch that never accepts
+    static MutableArrayDFA prefixQuery() {
+        def dfa = new MutableArrayDFA()
+        def j = dfa.newState()
+        def a = dfa.newState()
+        def x = dfa.newState()
+        dfa.connect(0, 'j' as char, j)
+        dfa.connect(j, 'a' as char, a)
+        dfa.connect(a, ANY, a)
+        dfa.connect(0, 'x' as char, x)
+        dfa.connect(x, ANY, x)
+        dfa.accept(a)
+        dfa
+    }
+
+    def 'live and universal states'() {
+        given:
+            def analysis = prefixQuery().analyze()
+        expect:
+            (0..3).collect { analysis.canReachAccept(it) } == [true, true, true, false]
+            (0..3).collect { analysis.alwaysAccepts(it) } == [false, false, true, false]
+            !analysis.canReachAccept(-1)
+            !analysis.alwaysAccepts(-1)
+    }
+
+    def 'accepting state without star edge is not universal'() {
+        given:
+            def analysis = NDFA.levenshtein('ab', 0).dfa().analyze()
+        expect:
+            (0..<analysis.dfa().size()).every { analysis.canReachAccept(it) && !analysis.alwaysAccepts(it) }
+    }
+
+    def 'states of a complement'() {
+        given:
+            def dfa = new IntDfaOperations().complement(NDFA.levenshtein('ab', 0).dfa())
+            def analysis = dfa.analyze()
+        expect:
+            analysis.alwaysAccepts(dfa.parse('b'))
+            analysis.alwaysAccepts(dfa.parse('abc'))
+            !analysis.alwaysAccepts(dfa.parse('a'))
+            analysis.canReachAccept(dfa.parse('ab'))
+    }
+
+    def 'cursor stops as soon as nothing can be accepted'() {
+        given:
+            def cursor = prefixQuery().analyze().cursor()
+        expect:
+            !cursor.isDead()
+            cursor.advance('j' as char)
+            !cursor.accepts()
+            cursor.advance('a' as char)
+            cursor.accepts()
+            cursor.alwaysAccepts()
+        when:
+            cursor.reset()
+        then:
+            !cursor.advance('xyz')
+            cursor.isDead()
+            cursor.length() == 1
+            !cursor.accepts()
+            !cursor.advance('a' as char)
+    }
+
+    def 'cursor accepts same words as parse'() {
+        given:
+            def dfa = NDFA.levenshtein('janos', 1).dfa()
+            def cursor = dfa.analyze().cursor()
+        expect:
+            ['', 'janos', 'jano', 'xjanos', 'jxnos', 'joe', 'erdos'].every { word ->
+                cursor.reset()
+                cursor.advance(word)
+                cursor.accepts() == dfa.test(word)
+            }
+    }
+}
@@ -0,0 +1,39 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class StateLabelMapSpec extends Specification {
+
+    def 'null value only marks state accepting'() {
+        given:
+            def map = new StateLabelMap<String>()
+        when:
+            map.put(3, null)
+            map.put(200, 'x')
+            map.put(200, 'y')
+        then:
+            map.hasKey(3)
+            map.values(3).isEmpty()
+            map.values(200) == ['x', 'y']
+            !map.hasKey(4)
+            !map.hasKey(-1)
+            !map.hasKey(100000)
+            map.debug() == '{3=[], 200=[x, y]}'
+    }
+
+    def 'removed state has no labels'() {
+        given:
+            def map = new StateLabelMap<String>()
+            map.put(70, 'x')
+        when:
+            map.remove(70)
+        then:
+            !map.hasKey(70)
+            map.values(70).isEmpty()
+        when:
+            map.put(70, null)
+            map.clear()
+        then:
+            !map.hasKey(70)
+    }
+}
@@ -0,0 +1,52 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+class TableIntDfaSpec extends Specification {
+
+    def 'table accepts same words'() {
+        given:
+            def dfa = new IntDfaOperations().union(NDFA.levenshtein('janos', 1).dfa(), NDFA.levenshtein('erdős', 1).dfa())
+            def table = TableIntDfa.of(dfa)
+        expect:
+            ['janos', 'jano', 'xanos', 'erdős', 'erdos', 'rdős', 'erdősz'].every { table.test(it) && table.parse(it) == dfa.parse(it) }
+            ['jan', 'xxx', 'erd', '', 'janosxy', 'őőőőő'].every { !table.test(it) && table.parse(it) == dfa.parse(it) }
+    }
+
+    def 'letters with same targets share a class'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            dfa.newState()
+            dfa.connect(0, 'a' as char, 1)
+            dfa.connect(0, 'b' as char, 1)
+            dfa.connect(0, 'c' as char, 1)
+            dfa.connect(0, 'x' as char, 0)
+            dfa.accept(1)
+        when:
+            def table = TableIntDfa.of(dfa)
+        then:
+            table.classes() == 3
+            table.labels(0) == 4
+            (0..<4).collect { table.label(0, it) } == ['a', 'b', 'c', 'x'] as char[]
+            table.test('xxb')
+            !table.test('xxd')
+            !table.test('ab')
+    }
+
+    def 'letter leading where any does is left out'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            dfa.newState()
+            dfa.connect(0, SimpleIntDfa.ANY, 1)
+            dfa.connect(0, 'a' as char, 1)
+            dfa.accept(1)
+        when:
+            def table = TableIntDfa.of(dfa)
+        then:
+            table.classes() == 1
+            table.labels(0) == 1
+            table.label(0, 0) == SimpleIntDfa.ANY
+            table.test('a')
+            table.test('z')
+    }
+}
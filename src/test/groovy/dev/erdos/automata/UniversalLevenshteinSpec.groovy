@@ -0,0 +1,54 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class UniversalLevenshteinSpec extends Specification {
+
+    @Unroll
+    def 'number of parametric states for distance #d'() {
+        expect:
+            UniversalLevenshtein.of(d).size() == size
+            UniversalLevenshtein.of(d).is(UniversalLevenshtein.of(d))
+        where:
+            d | size
+            0 | 1
+            1 | 5
+            2 | 30
+            3 | 196
+    }
+
+    @Unroll
+    def 'matcher agrees with ndfa for #word at distance #d'() {
+        given:
+            def ndfa = NDFA.levenshtein(word, d)
+            def matcher = UniversalLevenshtein.of(d).matcher(word)
+            def frozen = matcher.freeze()
+        expect:
+            ['', 'a', 'abraham', 'braham', 'abraha', 'abrah', 'xxabraham', 'araha', 'aabraham', 'abra', 'brah',
+             'abrahamabraham', 'janos', 'jjanos', 'xanos', 'jan', 'aaaa', 'aaaaa', 'aba'].forEach {
+                assert matcher.test(it) == ndfa.test(it)
+                assert frozen.test(it) == ndfa.test(it)
+            }
+        where:
+            word      | d
+            'abraham' | 1
+            'abraham' | 2
+            'abraham' | 3
+            'janos'   | 1
+            'aaaa'    | 2
+            ''        | 1
+    }
+
+    def 'matcher can be merged with other automata'() {
+        given:
+            def dfa = NDFA.levenshtein('erdos', 1).dfa()
+        when:
+            new IntDfaOperations().union(dfa, UniversalLevenshtein.of(1).matcher('janos'))
+        then:
+            dfa.test('janos')
+            dfa.test('xanos')
+            dfa.test('erdos')
+            !dfa.test('jaxxs')
+    }
+}
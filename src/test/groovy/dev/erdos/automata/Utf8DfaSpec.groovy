@@ -0,0 +1,119 @@
+package dev.erdos.automata
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import static dev.erdos.automata.SimpleIntDfa.ANY
+
+class Utf8DfaSpec extends Specification {
+
+    static byte[] utf8(String word) {
+        word.getBytes(StandardCharsets.UTF_8)
+    }
+
+    def 'accepts same words as the char automaton'() {
+        given:
+            def dfa = NDFA.levenshtein('erdős', 1).dfa()
+            def bytes = Utf8Dfa.of(dfa)
+        expect:
+            bytes.test(utf8(word)) == dfa.test(word)
+            bytes.test(ByteBuffer.wrap(utf8(word))) == dfa.test(word)
+        where:
+            word << ['erdős', 'erdos', 'erdő', 'érdős', 'erd€s', 'erdős中', 'erdoss', '', 'janos']
+    }
+
+    def 'bytes with the same targets share a class'() {
+        given:
+            def bytes = Utf8Dfa.of(DictionaryIndex.of(['ab', 'abc', 'bcd', 'cde', 'ő']).automaton())
+        expect:
+            bytes.classes() < 16
+            bytes.test(utf8('abc'))
+            bytes.test(utf8('ő'))
+            !bytes.test(utf8('abd'))
+            !bytes.test(utf8('ó'))
+    }
+
+    def 'duplicate labels keep the first edge'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            dfa.newState()
+            dfa.newState()
+            dfa.connect(0, 'a' as char, 2)
+            dfa.connect(0, 'a' as char, 1)
+            dfa.connect(0, 'c' as char, 1)
+            dfa.accept(1)
+            def bytes = Utf8Dfa.of(dfa)
+        expect:
+            dfa.test('a')
+            bytes.test(utf8('a'))
+            bytes.test(utf8('c'))
+            !bytes.test(utf8('b'))
+    }
+
+    def 'star reads whole code points'() {
+        given:
+            def dfa = new MutableArrayDFA()
+            def a = dfa.newState()
+            def any = dfa.newState()
+            def b = dfa.newState()
+            dfa.connect(0, 'a' as char, a)
+            dfa.connect(a, ANY, any)
+            dfa.connect(any, 'b' as char, b)
+            dfa.accept(b)
+            def bytes = Utf8Dfa.of(dfa)
+        expect:
+            bytes.test(utf8('axb'))
+            bytes.test(utf8('aőb'))
+            bytes.test(utf8('a€b'))
+            bytes.test(utf8('a😀b'))
+            !dfa.test('a😀b') // two chars in UTF-16
+            !bytes.test(utf8('ab'))
+            !bytes.test(utf8('axxb'))
+    }
+
+    def 'supplementary code points follow surrogate edges'() {
+        given:
+            def word = 'x😀'
+            def bytes = Utf8Dfa.of(NDFA.levenshtein(word, 0).dfa())
+        expect:
+            bytes.test(utf8(word))
+            !bytes.test(utf8('x😁'))
+            !bytes.test(utf8('x'))
+    }
+
+    def 'invalid sequences are rejected'() {
+        given:
+            def all = new MutableArrayDFA()
+            all.connect(0, ANY, 0)
+            all.accept(0)
+            def bytes = Utf8Dfa.of(all)
+        expect:
+            bytes.test(utf8('any wörd €😀'))
+            !bytes.test(input as byte[])
+        where:
+            input << [
+                    [0xC0, 0x80],             // overlong
+                    [0xE0, 0x9F, 0xBF],       // overlong
+                    [0xED, 0xA0, 0x80],       // surrogate
+                    [0xF4, 0x90, 0x80, 0x80], // above U+10FFFF
+                    [0xF5, 0x80, 0x80, 0x80],
+                    [0x80],
+                    [0xC3],                   // truncated
+            ]
+    }
+
+    def 'range of array and position of buffer'() {
+        given:
+            def bytes = Utf8Dfa.of(NDFA.levenshtein('ő', 0).dfa())
+            def data = utf8('xőx')
+            def buffer = ByteBuffer.wrap(data)
+            buffer.position(1).limit(3)
+        expect:
+            bytes.test(data, 1, 2)
+            !bytes.test(data, 0, 3)
+            bytes.test(buffer)
+            buffer.position() == 1
+    }
+}